@@ -76,6 +76,14 @@ public abstract class Action {
    * to the database entry where this action is stored.
    * */
   protected long databaseId;
+
+  /** Chain ID of actions that were not caused by an event, such as retried failed actions */
+  public static final long NO_CHAIN = 0;
+
+  /** The causal chain of the event that caused this action, see {@link CausalChain} */
+  protected long chainId = NO_CHAIN;
+  protected int chainDepth;
+
   /**
    * Create a new Action.
    * 
@@ -115,6 +123,27 @@ public abstract class Action {
     return actionName;
   }
 
+  /**
+   * Returns the device resource whose state this action sets. Of several actions setting the same
+   * resource only the last one has a lasting effect.
+   * 
+   * @return the resource name (see {@link ResourceExecutor}), or null if the action sets no state
+   */
+  public String getResource() {
+    return null;
+  }
+
+  /**
+   * Checks whether executing this action would leave the device as it is.
+   * 
+   * @param state
+   *          the cached device state
+   * @return true if the device is known to be in the state this action sets already
+   */
+  public boolean isNoOp(DeviceState state) {
+    return false;
+  }
+
   /**
    * @return Description of this type of action, usually used for display to user
    */
@@ -151,6 +180,25 @@ public abstract class Action {
       throw new IllegalArgumentException ();
     }
   }
+  /**
+   * Make this action part of the causal chain of the event that caused it.
+   * 
+   * @param event
+   *          the event that caused this action
+   */
+  public void setCausalChain(Event event) {
+    this.chainId = event.getChainId();
+    this.chainDepth = event.getChainDepth();
+  }
+
+  public long getChainId() {
+    return chainId;
+  }
+
+  public int getChainDepth() {
+    return chainDepth;
+  }
+
   public void setNotification(Boolean notification) {
     this.showNotification = notification;
   }
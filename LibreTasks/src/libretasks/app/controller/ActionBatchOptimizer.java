@@ -0,0 +1,150 @@
+/*  
+ * Copyright (c) 2016  LibreTasks - https://github.com/biotinker/LibreTasks  
+ *  
+ *  This file is free software: you may copy, redistribute and/or modify it  
+ *  under the terms of the GNU General Public License as published by the  
+ *  Free Software Foundation, either version 3 of the License, or (at your  
+ *  option) any later version.  
+ *  
+ *  This file is distributed in the hope that it will be useful, but  
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of  
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU  
+ *  General Public License for more details.  
+ *  
+ *  You should have received a copy of the GNU General Public License  
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package libretasks.app.controller;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+import android.content.Intent;
+import android.os.Bundle;
+import libretasks.app.controller.actions.ShowNotificationAction;
+
+/**
+ * Removes redundant actions from the actions fired by one event before they are executed, so that
+ * rules firing together don't start the same service or toggle the same radio several times:
+ * <ul>
+ * <li>Of several actions setting the same resource (see {@link Action#getResource()}) only the last
+ * one is kept.</li>
+ * <li>Actions identical to an earlier action are dropped.</li>
+ * <li>Notifications are merged into the first notification showing the same way.</li>
+ * </ul>
+ * Actions that would not change the device state are removed separately by
+ * {@link #removeNoOps(List, DeviceState, Map)}.
+ */
+public class ActionBatchOptimizer {
+  private static final String TAG = ActionBatchOptimizer.class.getSimpleName();
+
+  /**
+   * Optimize a list of actions.
+   * 
+   * @param actions
+   *          the actions fired by one event, in the order they would be executed
+   * @param coalesced
+   *          receives every action that was left out, with the reason
+   * @return the actions to execute, in their original order
+   */
+  public static ArrayList<Action> optimize(List<Action> actions, Map<Action, String> coalesced) {
+    // Last writer wins on each resource
+    HashMap<String, Action> lastWriters = new HashMap<String, Action>();
+    for (Action action : actions) {
+      if (action.getResource() != null) {
+        lastWriters.put(action.getResource(), action);
+      }
+    }
+
+    ArrayList<Action> optimized = new ArrayList<Action>();
+    HashMap<String, Action> seen = new HashMap<String, Action>();
+    HashMap<Boolean, ShowNotificationAction> notifications =
+        new HashMap<Boolean, ShowNotificationAction>();
+
+    for (Action action : actions) {
+      Action lastWriter = (action.getResource() != null) ? lastWriters.get(action.getResource())
+          : action;
+      if (lastWriter != action) {
+        coalesced.put(action, "overridden by " + describe(lastWriter));
+        continue;
+      }
+
+      String key = getKey(action);
+      Action same = seen.get(key);
+      if (same != null) {
+        coalesced.put(action, "duplicate of " + describe(same));
+        continue;
+      }
+      seen.put(key, action);
+
+      if (action instanceof ShowNotificationAction) {
+        Boolean showsNotification = action.showsNotification();
+        ShowNotificationAction first = notifications.get(showsNotification);
+        if (first != null) {
+          first.merge((ShowNotificationAction) action);
+          coalesced.put(action, "merged into " + describe(first));
+          continue;
+        }
+        notifications.put(showsNotification, (ShowNotificationAction) action);
+      }
+
+      optimized.add(action);
+    }
+    return optimized;
+  }
+
+  /**
+   * Remove the actions that would leave the device as it is, and mark the resources of the other
+   * actions as changing in the device state.
+   * 
+   * @param actions
+   *          the actions about to be executed, modified in place
+   * @param state
+   *          the cached device state
+   * @param coalesced
+   *          receives every action that was removed, with the reason
+   */
+  public static void removeNoOps(List<Action> actions, DeviceState state,
+      Map<Action, String> coalesced) {
+    Iterator<Action> iterator = actions.iterator();
+    while (iterator.hasNext()) {
+      Action action = iterator.next();
+      if (action.isNoOp(state)) {
+        coalesced.put(action, "no-op, the device is in this state already");
+        iterator.remove();
+      } else {
+        state.invalidate(action.getResource());
+      }
+    }
+  }
+
+  /**
+   * Builds a key that is equal for actions doing the same thing, no matter which rule fired them.
+   */
+  private static String getKey(Action action) {
+    Intent intent = action.getIntent();
+    StringBuilder key = new StringBuilder();
+    key.append(action.getExecutionMethod()).append('|').append(intent.getComponent()).append('|')
+        .append(intent.getAction()).append('|').append(intent.getDataString());
+
+    Bundle extras = intent.getExtras();
+    if (extras != null) {
+      for (String extra : new TreeSet<String>(extras.keySet())) {
+        if (extra.equals(Action.DATABASE_ID) || extra.equals(Action.ACTION_TYPE)
+            || extra.equals(Action.NOTIFICATION)) {
+          continue;
+        }
+        key.append('|').append(extra).append('=').append(extras.get(extra));
+      }
+    }
+    return key.toString();
+  }
+
+  private static String describe(Action action) {
+    return action.getDescription() + " of rule " + action.getRuleName();
+  }
+}
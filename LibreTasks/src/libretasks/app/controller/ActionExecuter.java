@@ -37,6 +37,7 @@ import java.util.List;
 
 import android.content.ActivityNotFoundException;
 import android.content.Context;
+import android.content.Intent;
 import libretasks.app.controller.util.ExceptionMessageMap;
 import libretasks.app.controller.util.Logger;
 import libretasks.app.controller.util.OmnidroidException;
@@ -61,12 +62,14 @@ public class ActionExecuter {
       throws OmnidroidException {
     for (Action action : actions) {
       try {
+        Intent intent = action.getIntent();
+        CausalChain.propagate(action, intent);
         if (action.getExecutionMethod().equals(Action.BY_ACTIVITY)) {
-          context.startActivity(action.getIntent());
+          context.startActivity(intent);
         } else if (action.getExecutionMethod().equals(Action.BY_SERVICE)) {
-          context.startService(action.getIntent());
+          context.startService(intent);
         } else if (action.getExecutionMethod().equals(Action.BY_BROADCAST)) {
-          context.sendBroadcast(action.getIntent());
+          context.sendBroadcast(intent);
         } else {
           // Illegal Action execution method.
           throw new OmnidroidException(120001, ExceptionMessageMap.getMessage(new Integer(120001)
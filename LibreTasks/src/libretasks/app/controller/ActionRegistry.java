@@ -0,0 +1,207 @@
+/*  
+ * Copyright (c) 2016  LibreTasks - https://github.com/biotinker/LibreTasks  
+ *  
+ *  This file is free software: you may copy, redistribute and/or modify it  
+ *  under the terms of the GNU General Public License as published by the  
+ *  Free Software Foundation, either version 3 of the License, or (at your  
+ *  option) any later version.  
+ *  
+ *  This file is distributed in the hope that it will be useful, but  
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of  
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU  
+ *  General Public License for more details.  
+ *  
+ *  You should have received a copy of the GNU General Public License  
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package libretasks.app.controller;
+
+import java.util.HashMap;
+
+import libretasks.app.controller.actions.CallPhoneAction;
+import libretasks.app.controller.actions.PauseMediaAction;
+import libretasks.app.controller.actions.PlayMediaAction;
+import libretasks.app.controller.actions.PowerOffAction;
+import libretasks.app.controller.actions.SendGmailAction;
+import libretasks.app.controller.actions.SendSmsAction;
+import libretasks.app.controller.actions.SetPhoneLoudAction;
+import libretasks.app.controller.actions.SetPhoneSilentAction;
+import libretasks.app.controller.actions.SetPhoneVibrateAction;
+import libretasks.app.controller.actions.SetScreenBrightnessAction;
+import libretasks.app.controller.actions.ShowAlertAction;
+import libretasks.app.controller.actions.ShowNotificationAction;
+import libretasks.app.controller.actions.ShowWebsiteAction;
+import libretasks.app.controller.actions.TurnOffBluetoothAction;
+import libretasks.app.controller.actions.TurnOffWifiAction;
+import libretasks.app.controller.actions.TurnOnBluetoothAction;
+import libretasks.app.controller.actions.TurnOnWifiAction;
+import libretasks.app.controller.actions.UpdateTwitterStatusAction;
+import libretasks.app.controller.util.ExceptionMessageMap;
+import libretasks.app.controller.util.Logger;
+import libretasks.app.controller.util.OmnidroidException;
+
+/**
+ * Maps an application name and action name to the factory that builds the action. Both rule
+ * actions and failed actions are built through this registry, so every action known to the
+ * application is available to both.
+ */
+public class ActionRegistry {
+  private static final String TAG = ActionRegistry.class.getSimpleName();
+
+  /** Builds an action from its parameters */
+  public interface ActionFactory {
+    Action create(HashMap<String, String> parameters) throws OmnidroidException;
+  }
+
+  private static final HashMap<String, ActionFactory> factories =
+      new HashMap<String, ActionFactory>();
+
+  static {
+    register(SendSmsAction.APP_NAME, SendSmsAction.ACTION_NAME, new ActionFactory() {
+      public Action create(HashMap<String, String> parameters) throws OmnidroidException {
+        return new SendSmsAction(parameters);
+      }
+    });
+    register(CallPhoneAction.APP_NAME, CallPhoneAction.ACTION_NAME, new ActionFactory() {
+      public Action create(HashMap<String, String> parameters) throws OmnidroidException {
+        return new CallPhoneAction(parameters);
+      }
+    });
+    register(SendGmailAction.APP_NAME, SendGmailAction.ACTION_NAME, new ActionFactory() {
+      public Action create(HashMap<String, String> parameters) throws OmnidroidException {
+        return new SendGmailAction(parameters);
+      }
+    });
+    register(ShowAlertAction.APP_NAME, ShowAlertAction.ACTION_NAME, new ActionFactory() {
+      public Action create(HashMap<String, String> parameters) throws OmnidroidException {
+        return new ShowAlertAction(parameters);
+      }
+    });
+    register(ShowNotificationAction.APP_NAME, ShowNotificationAction.ACTION_NAME,
+        new ActionFactory() {
+          public Action create(HashMap<String, String> parameters) throws OmnidroidException {
+            return new ShowNotificationAction(parameters);
+          }
+        });
+    register(ShowWebsiteAction.APP_NAME, ShowWebsiteAction.ACTION_NAME, new ActionFactory() {
+      public Action create(HashMap<String, String> parameters) throws OmnidroidException {
+        return new ShowWebsiteAction(parameters);
+      }
+    });
+    register(SetScreenBrightnessAction.APP_NAME, SetScreenBrightnessAction.ACTION_NAME,
+        new ActionFactory() {
+          public Action create(HashMap<String, String> parameters) throws OmnidroidException {
+            return new SetScreenBrightnessAction(parameters);
+          }
+        });
+    register(PauseMediaAction.APP_NAME, PauseMediaAction.ACTION_NAME, new ActionFactory() {
+      public Action create(HashMap<String, String> parameters) throws OmnidroidException {
+        return new PauseMediaAction(parameters);
+      }
+    });
+    register(PlayMediaAction.APP_NAME, PlayMediaAction.ACTION_NAME, new ActionFactory() {
+      public Action create(HashMap<String, String> parameters) throws OmnidroidException {
+        return new PlayMediaAction(parameters);
+      }
+    });
+    register(SetPhoneLoudAction.APP_NAME, SetPhoneLoudAction.ACTION_NAME, new ActionFactory() {
+      public Action create(HashMap<String, String> parameters) throws OmnidroidException {
+        return new SetPhoneLoudAction(parameters);
+      }
+    });
+    register(SetPhoneSilentAction.APP_NAME, SetPhoneSilentAction.ACTION_NAME,
+        new ActionFactory() {
+          public Action create(HashMap<String, String> parameters) throws OmnidroidException {
+            return new SetPhoneSilentAction(parameters);
+          }
+        });
+    register(SetPhoneVibrateAction.APP_NAME, SetPhoneVibrateAction.ACTION_NAME,
+        new ActionFactory() {
+          public Action create(HashMap<String, String> parameters) throws OmnidroidException {
+            return new SetPhoneVibrateAction(parameters);
+          }
+        });
+    register(TurnOffWifiAction.APP_NAME, TurnOffWifiAction.ACTION_NAME, new ActionFactory() {
+      public Action create(HashMap<String, String> parameters) throws OmnidroidException {
+        return new TurnOffWifiAction(parameters);
+      }
+    });
+    register(TurnOnWifiAction.APP_NAME, TurnOnWifiAction.ACTION_NAME, new ActionFactory() {
+      public Action create(HashMap<String, String> parameters) throws OmnidroidException {
+        return new TurnOnWifiAction(parameters);
+      }
+    });
+    register(TurnOffBluetoothAction.APP_NAME, TurnOffBluetoothAction.ACTION_NAME,
+        new ActionFactory() {
+          public Action create(HashMap<String, String> parameters) throws OmnidroidException {
+            return new TurnOffBluetoothAction(parameters);
+          }
+        });
+    register(TurnOnBluetoothAction.APP_NAME, TurnOnBluetoothAction.ACTION_NAME,
+        new ActionFactory() {
+          public Action create(HashMap<String, String> parameters) throws OmnidroidException {
+            return new TurnOnBluetoothAction(parameters);
+          }
+        });
+    register(UpdateTwitterStatusAction.APP_NAME, UpdateTwitterStatusAction.ACTION_NAME,
+        new ActionFactory() {
+          public Action create(HashMap<String, String> parameters) throws OmnidroidException {
+            return new UpdateTwitterStatusAction(parameters);
+          }
+        });
+    register(PowerOffAction.APP_NAME, PowerOffAction.ACTION_NAME, new ActionFactory() {
+      public Action create(HashMap<String, String> parameters) throws OmnidroidException {
+        return new PowerOffAction(parameters);
+      }
+    });
+  }
+
+  private ActionRegistry() {
+  }
+
+  private static String key(String appName, String actionName) {
+    return appName + "/" + actionName;
+  }
+
+  /**
+   * Register the factory for an action, replacing any factory registered for the same action.
+   * 
+   * @param appName
+   *          Name of the application
+   * @param actionName
+   *          Name of the action
+   * @param factory
+   *          Factory that builds the action
+   */
+  public static synchronized void register(String appName, String actionName,
+      ActionFactory factory) {
+    factories.put(key(appName, actionName), factory);
+  }
+
+  /**
+   * Build an action from its name and parameters.
+   * 
+   * @param appName
+   *          Name of the application
+   * @param actionName
+   *          Name of the action
+   * @param parameters
+   *          Parameters required to initialize the action
+   * @return An action object
+   * @throws OmnidroidException
+   *           if no action is registered under the given names
+   */
+  public static Action create(String appName, String actionName,
+      HashMap<String, String> parameters) throws OmnidroidException {
+    ActionFactory factory;
+    synchronized (ActionRegistry.class) {
+      factory = factories.get(key(appName, actionName));
+    }
+    if (factory == null) {
+      Logger.d(TAG, "doesn't catch AppName is: " + appName + " and actionName is: " + actionName);
+      throw new OmnidroidException(120003, ExceptionMessageMap.getMessage(new Integer(120003)
+          .toString()));
+    }
+    return factory.create(parameters);
+  }
+}
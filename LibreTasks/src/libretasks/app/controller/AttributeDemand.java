@@ -0,0 +1,85 @@
+/*  
+ * Copyright (c) 2016  LibreTasks - https://github.com/biotinker/LibreTasks  
+ *  
+ *  This file is free software: you may copy, redistribute and/or modify it  
+ *  under the terms of the GNU General Public License as published by the  
+ *  Free Software Foundation, either version 3 of the License, or (at your  
+ *  option) any later version.  
+ *  
+ *  This file is distributed in the hope that it will be useful, but  
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of  
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU  
+ *  General Public License for more details.  
+ *  
+ *  You should have received a copy of the GNU General Public License  
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package libretasks.app.controller;
+
+import java.util.HashMap;
+import java.util.Set;
+
+import android.content.Context;
+import libretasks.app.model.CoreRulesDbHelper;
+
+/**
+ * Keeps track of which event attributes the enabled rules of each event type use, either in a
+ * filter or as an {@code <attribute>} tag in an action parameter. Global attributes such as
+ * {@link Event#ATTRIBUTE_LOCATION} are costly to look up, so they are only added to an event when
+ * one of its rules asks for them.
+ * <p>
+ * The attribute sets are compiled from the database the first time an event type is seen and are
+ * kept until {@link #invalidate()} is called after a rule has been changed.
+ * </p>
+ */
+public class AttributeDemand {
+  private static final String TAG = AttributeDemand.class.getSimpleName();
+
+  /** Attribute names used by the rules of each event, keyed by application and event name */
+  private static final HashMap<String, Set<String>> demand = new HashMap<String, Set<String>>();
+
+  /**
+   * Get the attributes used by the enabled rules of an event type.
+   * 
+   * @param context
+   *          the context to open the rule database with
+   * @param event
+   *          the event to look up
+   * @return the names of the attributes used by filters or action parameters of the rules
+   */
+  public static synchronized Set<String> getAttributes(Context context, Event event) {
+    String key = event.getAppName() + "/" + event.getEventName();
+    Set<String> attributes = demand.get(key);
+    if (attributes == null) {
+      CoreRulesDbHelper coreRulesDbHelper = new CoreRulesDbHelper(context);
+      attributes = coreRulesDbHelper.getAttributesUsedByEvent(event.getAppName(),
+          event.getEventName());
+      coreRulesDbHelper.close();
+      demand.put(key, attributes);
+    }
+    return attributes;
+  }
+
+  /**
+   * Check whether any enabled rule of an event type uses an attribute.
+   * 
+   * @param context
+   *          the context to open the rule database with
+   * @param event
+   *          the event to look up
+   * @param attributeName
+   *          the name of the attribute
+   * @return true if a filter or action parameter of the rules uses the attribute
+   */
+  public static boolean isUsed(Context context, Event event, String attributeName) {
+    return getAttributes(context, event).contains(attributeName);
+  }
+
+  /**
+   * Forget the compiled attribute sets, must be called whenever a rule is saved, deleted, enabled
+   * or disabled.
+   */
+  public static synchronized void invalidate() {
+    demand.clear();
+  }
+}
@@ -0,0 +1,148 @@
+/*  
+ * Copyright (c) 2016  LibreTasks - https://github.com/biotinker/LibreTasks  
+ *  
+ *  This file is free software: you may copy, redistribute and/or modify it  
+ *  under the terms of the GNU General Public License as published by the  
+ *  Free Software Foundation, either version 3 of the License, or (at your  
+ *  option) any later version.  
+ *  
+ *  This file is distributed in the hope that it will be useful, but  
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of  
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU  
+ *  General Public License for more details.  
+ *  
+ *  You should have received a copy of the GNU General Public License  
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package libretasks.app.controller;
+
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.content.Intent;
+import libretasks.app.controller.actions.CallPhoneAction;
+import libretasks.app.controller.actions.SendSmsAction;
+import libretasks.app.controller.events.CallEndedEvent;
+import libretasks.app.controller.events.InternetAvailableEvent;
+
+/**
+ * Tracks which chain of rule actions an {@link Event} belongs to. Every event starts a new chain
+ * unless it was caused by an action; the chain ID and the number of hops are carried as intent
+ * extras from the event to its action intents, and from there to the events the actions cause.
+ * <p>
+ * Actions mostly cause events indirectly (turning on wifi makes the system report a network
+ * change), so an event without chain extras that arrives shortly after an action that can cause
+ * events of its type was executed is attributed to that action's chain, see {@link #CAUSES}. Any
+ * other event starts a new chain. A chain with more than {@link #MAX_DEPTH} hops is treated as a
+ * rule loop.
+ * </p>
+ */
+public class CausalChain {
+  /** Intent extra keys */
+  public static final String EXTRA_CHAIN_ID = "libretasks.CausalChainId";
+  public static final String EXTRA_CHAIN_DEPTH = "libretasks.CausalChainDepth";
+
+  /** Number of hops after which events of a chain are suppressed */
+  public static final int MAX_DEPTH = 5;
+
+  /** Time (in milliseconds) after an action during which new events are attributed to it */
+  private static final long ATTRIBUTION_WINDOW = 10000;
+
+  private static final AtomicLong nextChainId = new AtomicLong(System.currentTimeMillis());
+
+  /**
+   * Event intent actions an action can cause, by the resource the action sets or, for actions that
+   * set no resource, by the action name. Actions missing here cause no events the rules can see.
+   */
+  private static final HashMap<String, String[]> CAUSES = new HashMap<String, String[]>();
+  static {
+    CAUSES.put(ResourceExecutor.RESOURCE_WIFI, new String[] { InternetAvailableEvent.ACTION_NAME });
+    CAUSES.put(CallPhoneAction.PHONE_CALL_INTENT, new String[] { CallEndedEvent.ACTION_NAME });
+    // A message sent to one's own number
+    CAUSES.put(SendSmsAction.SMS_INTENT, new String[] { IntentParser.SMS_INTENT_ACTION });
+  }
+
+  /**
+   * The chain of the last executed action that can cause an event, by event intent action. Links
+   * are replaced as a whole so readers see a consistent one.
+   */
+  private static final ConcurrentHashMap<String, Link> lastCauses =
+      new ConcurrentHashMap<String, Link>();
+
+  /** An immutable (chain, depth, time) triple */
+  private static class Link {
+    final long chainId;
+    final int depth;
+    final long time;
+
+    Link(long chainId, int depth, long time) {
+      this.chainId = chainId;
+      this.depth = depth;
+      this.time = time;
+    }
+  }
+
+  /**
+   * This is a static utility class which cannot be instantiated.
+   */
+  private CausalChain() {
+  }
+
+  /**
+   * Add chain extras to an event intent that doesn't carry them yet, either continuing the chain of
+   * a recent action that can cause the event or starting a new one.
+   * 
+   * @param intent
+   *          the intent of the received event
+   */
+  public static void stamp(Intent intent) {
+    if (intent.hasExtra(EXTRA_CHAIN_ID)) {
+      return;
+    }
+
+    Link action = (intent.getAction() != null) ? lastCauses.get(intent.getAction()) : null;
+    if (action != null && System.currentTimeMillis() - action.time < ATTRIBUTION_WINDOW) {
+      intent.putExtra(EXTRA_CHAIN_ID, action.chainId);
+      intent.putExtra(EXTRA_CHAIN_DEPTH, action.depth + 1);
+    } else {
+      intent.putExtra(EXTRA_CHAIN_ID, nextChainId.incrementAndGet());
+      intent.putExtra(EXTRA_CHAIN_DEPTH, 0);
+    }
+  }
+
+  /**
+   * Carry the chain of an action over to the intent that executes it, and remember it so that
+   * events this action can cause join the chain.
+   * 
+   * @param action
+   *          the action being executed
+   * @param intent
+   *          the intent that executes the action
+   */
+  public static void propagate(Action action, Intent intent) {
+    if (action.getChainId() == Action.NO_CHAIN) {
+      return;
+    }
+    intent.putExtra(EXTRA_CHAIN_ID, action.getChainId());
+    intent.putExtra(EXTRA_CHAIN_DEPTH, action.getChainDepth());
+    String[] causes = CAUSES.get(action.getResource() != null ? action.getResource() : action
+        .getActionName());
+    if (causes == null) {
+      return;
+    }
+    Link link = new Link(action.getChainId(), action.getChainDepth(), System.currentTimeMillis());
+    for (String eventAction : causes) {
+      lastCauses.put(eventAction, link);
+    }
+  }
+
+  /**
+   * @param event
+   *          the event to check
+   * @return true if the event is too many hops down its chain, which indicates a rule loop
+   */
+  public static boolean isLoop(Event event) {
+    return event.getChainDepth() > MAX_DEPTH;
+  }
+}
@@ -0,0 +1,202 @@
+/*  
+ * Copyright (c) 2016  LibreTasks - https://github.com/biotinker/LibreTasks  
+ *  
+ *  This file is free software: you may copy, redistribute and/or modify it  
+ *  under the terms of the GNU General Public License as published by the  
+ *  Free Software Foundation, either version 3 of the License, or (at your  
+ *  option) any later version.  
+ *  
+ *  This file is distributed in the hope that it will be useful, but  
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of  
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU  
+ *  General Public License for more details.  
+ *  
+ *  You should have received a copy of the GNU General Public License  
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package libretasks.app.controller;
+
+import android.bluetooth.BluetoothAdapter;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.database.ContentObserver;
+import android.media.AudioManager;
+import android.net.wifi.WifiManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.provider.Settings;
+import libretasks.app.controller.util.Logger;
+
+/**
+ * Caches the device state that actions change: the ringer mode, the wifi and bluetooth radios and
+ * the screen brightness. The cache is kept current from system broadcasts (and a settings observer
+ * for the brightness), so actions can check whether they would change anything without querying
+ * system services.
+ * <p>
+ * A value is unknown ({@link #UNKNOWN}) until it has been read, while a radio is switching, and
+ * from the time an action on it is dispatched until the system reports the new state.
+ * </p>
+ */
+public class DeviceState {
+  private static final String TAG = DeviceState.class.getSimpleName();
+
+  /** Value of a state that is not known */
+  public static final int UNKNOWN = -1;
+
+  /** Values of the radio states */
+  public static final int OFF = 0;
+  public static final int ON = 1;
+
+  private static DeviceState instance;
+
+  private volatile int ringerMode = UNKNOWN;
+  private volatile int wifiState = UNKNOWN;
+  private volatile int bluetoothState = UNKNOWN;
+  private volatile int brightness = UNKNOWN;
+
+  private final Context context;
+
+  /**
+   * Get the shared device state, which starts monitoring the device on the first call. Must be
+   * called from the main thread.
+   * 
+   * @param context
+   *          any context of the application
+   * @return the device state
+   */
+  public static synchronized DeviceState instance(Context context) {
+    if (instance == null) {
+      instance = new DeviceState(context.getApplicationContext());
+    }
+    return instance;
+  }
+
+  private DeviceState(Context context) {
+    this.context = context;
+
+    AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+    ringerMode = audioManager.getRingerMode();
+
+    WifiManager wifiManager = (WifiManager) context.getSystemService(Context.WIFI_SERVICE);
+    wifiState = toWifiState(wifiManager.getWifiState());
+
+    BluetoothAdapter bluetoothAdapter = BluetoothAdapter.getDefaultAdapter();
+    if (bluetoothAdapter != null) {
+      bluetoothState = toBluetoothState(bluetoothAdapter.getState());
+    }
+
+    readBrightness();
+
+    IntentFilter filter = new IntentFilter();
+    filter.addAction(AudioManager.RINGER_MODE_CHANGED_ACTION);
+    filter.addAction(WifiManager.WIFI_STATE_CHANGED_ACTION);
+    filter.addAction(BluetoothAdapter.ACTION_STATE_CHANGED);
+    context.registerReceiver(receiver, filter);
+
+    context.getContentResolver().registerContentObserver(
+        Settings.System.getUriFor(Settings.System.SCREEN_BRIGHTNESS), false,
+        new ContentObserver(new Handler(Looper.getMainLooper())) {
+          @Override
+          public void onChange(boolean selfChange) {
+            readBrightness();
+          }
+        });
+  }
+
+  private final BroadcastReceiver receiver = new BroadcastReceiver() {
+    @Override
+    public void onReceive(Context context, Intent intent) {
+      String action = intent.getAction();
+      if (AudioManager.RINGER_MODE_CHANGED_ACTION.equals(action)) {
+        ringerMode = intent.getIntExtra(AudioManager.EXTRA_RINGER_MODE, UNKNOWN);
+      } else if (WifiManager.WIFI_STATE_CHANGED_ACTION.equals(action)) {
+        wifiState = toWifiState(intent.getIntExtra(WifiManager.EXTRA_WIFI_STATE,
+            WifiManager.WIFI_STATE_UNKNOWN));
+      } else if (BluetoothAdapter.ACTION_STATE_CHANGED.equals(action)) {
+        bluetoothState = toBluetoothState(intent.getIntExtra(BluetoothAdapter.EXTRA_STATE,
+            BluetoothAdapter.ERROR));
+      }
+    }
+  };
+
+  private void readBrightness() {
+    try {
+      brightness = Settings.System.getInt(context.getContentResolver(),
+          Settings.System.SCREEN_BRIGHTNESS);
+    } catch (Settings.SettingNotFoundException e) {
+      Logger.w(TAG, "Screen brightness is not available");
+      brightness = UNKNOWN;
+    }
+  }
+
+  private static int toWifiState(int state) {
+    switch (state) {
+    case WifiManager.WIFI_STATE_ENABLED:
+      return ON;
+    case WifiManager.WIFI_STATE_DISABLED:
+      return OFF;
+    default:
+      return UNKNOWN;
+    }
+  }
+
+  private static int toBluetoothState(int state) {
+    switch (state) {
+    case BluetoothAdapter.STATE_ON:
+      return ON;
+    case BluetoothAdapter.STATE_OFF:
+      return OFF;
+    default:
+      return UNKNOWN;
+    }
+  }
+
+  /**
+   * Forget the cached state of a resource an action is about to change, until the system reports
+   * its new state.
+   * 
+   * @param resource
+   *          the resource (see {@link ResourceExecutor}), may be null
+   */
+  public void invalidate(String resource) {
+    if (ResourceExecutor.RESOURCE_RINGER.equals(resource)) {
+      ringerMode = UNKNOWN;
+    } else if (ResourceExecutor.RESOURCE_WIFI.equals(resource)) {
+      wifiState = UNKNOWN;
+    } else if (ResourceExecutor.RESOURCE_BLUETOOTH.equals(resource)) {
+      bluetoothState = UNKNOWN;
+    } else if (ResourceExecutor.RESOURCE_BRIGHTNESS.equals(resource)) {
+      brightness = UNKNOWN;
+    }
+  }
+
+  /**
+   * @return the ringer mode (see {@link AudioManager#getRingerMode()}), or {@link #UNKNOWN}
+   */
+  public int getRingerMode() {
+    return ringerMode;
+  }
+
+  /**
+   * @return {@link #ON}, {@link #OFF} or {@link #UNKNOWN}
+   */
+  public int getWifiState() {
+    return wifiState;
+  }
+
+  /**
+   * @return {@link #ON}, {@link #OFF} or {@link #UNKNOWN}
+   */
+  public int getBluetoothState() {
+    return bluetoothState;
+  }
+
+  /**
+   * @return the screen brightness between 0 and 255, or {@link #UNKNOWN}
+   */
+  public int getBrightness() {
+    return brightness;
+  }
+}
@@ -0,0 +1,197 @@
+/*  
+ * Copyright (c) 2016  LibreTasks - https://github.com/biotinker/LibreTasks  
+ *  
+ *  This file is free software: you may copy, redistribute and/or modify it  
+ *  under the terms of the GNU General Public License as published by the  
+ *  Free Software Foundation, either version 3 of the License, or (at your  
+ *  option) any later version.  
+ *  
+ *  This file is distributed in the hope that it will be useful, but  
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of  
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU  
+ *  General Public License for more details.  
+ *  
+ *  You should have received a copy of the GNU General Public License  
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package libretasks.app.controller;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.location.LocationManager;
+import android.preference.PreferenceManager;
+import libretasks.app.R;
+import libretasks.app.model.LogWriter;
+
+/**
+ * An immutable snapshot of the preferences used while handling events. The snapshot is built from
+ * the shared preferences the first time it is needed and replaced as a whole by {@link #reload}
+ * whenever one of its preferences changes, so code handling events reads plain fields instead of
+ * parsing preferences every time.
+ */
+public class EngineConfig {
+  private static final String TAG = EngineConfig.class.getSimpleName();
+
+  /*
+   * Defaults of the list preferences, stored in string form.
+   * 
+   * Unfortunately Android doesn't support integer based arrays with the ListPreference interface,
+   * so we have to convert an integer back from a string. See:
+   * http://code.google.com/p/android/issues/detail?id=2096
+   */
+
+  /** Default limit of the number of events handled in any minute */
+  private static final String THROTTLE_DEFAULT = "10";
+
+  /** Default limit of the number of times each rule can fire in any minute */
+  private static final String RULE_THROTTLE_DEFAULT = "5";
+
+  /** Default limit of time to keep logs around, specified in hours */
+  private static final String LOG_LIMIT_DEFAULT = "24";
+
+  /** Default number of entries each log is limited to, 0 to limit logs by age instead */
+  private static final String LOG_SIZE_LIMIT_DEFAULT = "0";
+
+  /** Default distance a location has to move to be reported as changed, in meters */
+  private static final String LOCATION_CHANGE_DISTANCE_DEFAULT = "100";
+
+  /** Throttle disabled value */
+  public static final int THROTTLE_DISABLED = 0;
+
+  /** The current snapshot, replaced as a whole so readers always see a consistent one */
+  private static volatile EngineConfig current;
+
+  private final int throttle;
+  private final int ruleThrottle;
+  private final int logLimitHours;
+  private final int logSizeLimit;
+  private final String locationProvider;
+  private final int locationChangeDistance;
+  private final boolean logUnmatchedEvents;
+
+  private EngineConfig(Context context, SharedPreferences prefs) {
+    throttle = Integer.parseInt(prefs.getString(context.getString(R.string.pref_key_throttle),
+        THROTTLE_DEFAULT));
+    ruleThrottle = Integer.parseInt(prefs.getString(context
+        .getString(R.string.pref_key_rule_throttle), RULE_THROTTLE_DEFAULT));
+    logLimitHours = Integer.parseInt(prefs.getString(context.getString(R.string.pref_key_log_limit),
+        LOG_LIMIT_DEFAULT));
+    logSizeLimit = Integer.parseInt(prefs.getString(context
+        .getString(R.string.pref_key_log_size_limit), LOG_SIZE_LIMIT_DEFAULT));
+    logUnmatchedEvents = prefs.getBoolean(context
+        .getString(R.string.pref_key_log_unmatched_events), true);
+
+    if (prefs.getBoolean(context.getString(R.string.pref_key_passive), false)) {
+      locationProvider = LocationManager.PASSIVE_PROVIDER;
+    } else {
+      locationProvider = prefs.getString(context.getString(R.string.pref_key_provider), null);
+    }
+    locationChangeDistance = Integer.parseInt(prefs.getString(context
+        .getString(R.string.pref_key_location_change_distance), LOCATION_CHANGE_DISTANCE_DEFAULT));
+  }
+
+  /**
+   * Get the current configuration, building it from the shared preferences if needed.
+   * 
+   * @param context
+   *          the context to read the preferences with
+   * @return the current configuration
+   */
+  public static EngineConfig get(Context context) {
+    EngineConfig config = current;
+    if (config == null) {
+      config = reload(context);
+    }
+    return config;
+  }
+
+  /**
+   * Build a new configuration from the shared preferences and make it the current one. A changed
+   * log size limit is applied to the logs right away.
+   * 
+   * @param context
+   *          the context to read the preferences with
+   * @return the new configuration
+   */
+  public static EngineConfig reload(Context context) {
+    EngineConfig config = new EngineConfig(context, PreferenceManager
+        .getDefaultSharedPreferences(context));
+    EngineConfig previous = current;
+    current = config;
+    if (previous != null && previous.logSizeLimit != config.logSizeLimit) {
+      LogWriter.instance(context).deleteOldLogsNow();
+    }
+    return config;
+  }
+
+  /**
+   * Check whether a preference is part of the configuration.
+   * 
+   * @param context
+   *          the context to look up the preference keys with
+   * @param key
+   *          the key of the changed preference
+   * @return true if the configuration must be reloaded after the preference changed
+   */
+  public static boolean isConfigKey(Context context, String key) {
+    return key.equals(context.getString(R.string.pref_key_throttle))
+        || key.equals(context.getString(R.string.pref_key_rule_throttle))
+        || key.equals(context.getString(R.string.pref_key_log_limit))
+        || key.equals(context.getString(R.string.pref_key_log_size_limit))
+        || key.equals(context.getString(R.string.pref_key_log_unmatched_events))
+        || key.equals(context.getString(R.string.pref_key_passive))
+        || key.equals(context.getString(R.string.pref_key_provider))
+        || key.equals(context.getString(R.string.pref_key_location_change_distance));
+  }
+
+  /**
+   * @return the number of events handled in any minute, {@link #THROTTLE_DISABLED} for no limit
+   */
+  public int getThrottle() {
+    return throttle;
+  }
+
+  /**
+   * @return the number of times each rule can fire in any minute,
+   *         {@link RuleRateLimiter#LIMIT_DISABLED} for no limit
+   */
+  public int getRuleThrottle() {
+    return ruleThrottle;
+  }
+
+  /**
+   * @return the number of hours logs are kept
+   */
+  public int getLogLimitHours() {
+    return logLimitHours;
+  }
+
+  /**
+   * @return the number of entries each log is kept to, or 0 if logs are kept for
+   *         {@link #getLogLimitHours()} instead
+   */
+  public int getLogSizeLimit() {
+    return logSizeLimit;
+  }
+
+  /**
+   * @return whether events that no enabled rule is waiting for are still written to the event log
+   */
+  public boolean isLogUnmatchedEvents() {
+    return logUnmatchedEvents;
+  }
+
+  /**
+   * @return the location provider to monitor, or null if none is set
+   */
+  public String getLocationProvider() {
+    return locationProvider;
+  }
+
+  /**
+   * @return the distance in meters a location has to move to be reported as changed
+   */
+  public int getLocationChangeDistance() {
+    return locationChangeDistance;
+  }
+}
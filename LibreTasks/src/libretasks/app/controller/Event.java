@@ -16,6 +16,7 @@
 package libretasks.app.controller;
 
 import android.content.Intent;
+import android.os.Bundle;
 
 /**
  * This class encapsulates a generic event. It wraps the {@link android.content.Intent} that
@@ -32,8 +33,9 @@ public abstract class Event {
   private final String appName;
   private final String eventName;
 
-  protected final String timeAttribute;
-  protected final String locationAttribute;
+  /** The causal chain this event belongs to, see {@link CausalChain} */
+  protected final long chainId;
+  protected final int chainDepth;
 
   /** Stores the intent that triggered this event, which contains data associated with it */
   protected final Intent intent;
@@ -49,17 +51,8 @@ public abstract class Event {
   public Event(String appName, String eventName, Intent intent) {
     this.intent = intent;
 
-    if (intent.hasExtra(ATTRIBUTE_TIME)) {
-      timeAttribute = intent.getStringExtra(ATTRIBUTE_TIME);
-    } else {
-      timeAttribute = "";
-    }
-
-    if (intent.hasExtra(ATTRIBUTE_LOCATION)) {
-      locationAttribute = intent.getStringExtra(ATTRIBUTE_LOCATION);
-    } else {
-      locationAttribute = "";
-    }
+    chainId = intent.getLongExtra(CausalChain.EXTRA_CHAIN_ID, Action.NO_CHAIN);
+    chainDepth = intent.getIntExtra(CausalChain.EXTRA_CHAIN_DEPTH, 0);
 
     this.appName = appName;
     this.eventName = eventName;
@@ -84,7 +77,23 @@ public abstract class Event {
   }
 
   /**
-   * Looks up attributes associated with this event.
+   * @return the ID of the causal chain this event belongs to
+   */
+  public long getChainId() {
+    return chainId;
+  }
+
+  /**
+   * @return the number of rule actions between the start of the causal chain and this event
+   */
+  public int getChainDepth() {
+    return chainDepth;
+  }
+
+  /**
+   * Looks up attributes associated with this event. The global attributes are read from the intent
+   * when asked for, since they are only added to it if a rule of this event uses them (see
+   * {@link AttributeDemand}).
    * 
    * @param attributeName
    *          the name of the attribute associated with this event
@@ -93,10 +102,9 @@ public abstract class Event {
    *           if the attribute name is not valid for this event
    */
   public String getAttribute(String attributeName) throws IllegalArgumentException {
-    if (attributeName.equals(ATTRIBUTE_TIME)) {
-      return timeAttribute;
-    } else if (attributeName.equals(ATTRIBUTE_LOCATION)) {
-      return locationAttribute;
+    if (attributeName.equals(ATTRIBUTE_TIME) || attributeName.equals(ATTRIBUTE_LOCATION)) {
+      String value = intent.getStringExtra(attributeName);
+      return (value != null) ? value : "";
     } else {
       throw new IllegalArgumentException();
     }
@@ -112,4 +120,12 @@ public abstract class Event {
       return "";
     }
   }
+
+  /**
+   * @return the typed parameters of the event as they are passed through the android intent, or
+   *         null if there are none
+   */
+  public Bundle getExtras() {
+    return intent.getExtras();
+  }
 }
\ No newline at end of file
@@ -0,0 +1,152 @@
+/*  
+ * Copyright (c) 2016  LibreTasks - https://github.com/biotinker/LibreTasks  
+ *  
+ *  This file is free software: you may copy, redistribute and/or modify it  
+ *  under the terms of the GNU General Public License as published by the  
+ *  Free Software Foundation, either version 3 of the License, or (at your  
+ *  option) any later version.  
+ *  
+ *  This file is distributed in the hope that it will be useful, but  
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of  
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU  
+ *  General Public License for more details.  
+ *  
+ *  You should have received a copy of the GNU General Public License  
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package libretasks.app.controller;
+
+import java.util.HashSet;
+
+import android.content.Context;
+import android.content.Intent;
+import libretasks.app.controller.events.InternetAvailableEvent;
+import libretasks.app.controller.events.ServiceAvailableEvent;
+import libretasks.app.controller.events.TimeTickEvent;
+import libretasks.app.controller.util.Logger;
+import libretasks.app.model.CoreRulesDbHelper;
+import libretasks.app.model.EventLog;
+import libretasks.app.model.LogWriter;
+
+/**
+ * Decides whether an intent is worth handing to the {@link HandlerService}. Only events that some
+ * enabled rule is waiting for are passed on, plus the events that trigger retries of failed
+ * actions. Everything else is dropped before a service is started or the rule database is
+ * queried, and is only written to the event log if the user asked for all events to be logged.
+ * 
+ * <p>
+ * The set of events with enabled rules is read from the database the first time it is needed and
+ * is kept until {@link #invalidate()} is called after a rule has been changed.
+ * </p>
+ */
+public class EventFilter {
+  private static final String TAG = EventFilter.class.getSimpleName();
+
+  /** Application and event names of the events with enabled rules, null if not loaded yet */
+  private static HashSet<String> enabledEvents;
+
+  private EventFilter() {
+  }
+
+  /**
+   * Check whether an intent should be passed on to the {@link HandlerService}. Events that are
+   * dropped are logged here if {@link EngineConfig#isLogUnmatchedEvents()} is set.
+   * 
+   * @param context
+   *          the context to open the rule database with
+   * @param intent
+   *          the intent describing the event
+   * @return true if the intent must be handled
+   */
+  public static boolean accept(Context context, Intent intent) {
+    Event event = IntentParser.getEvent(intent);
+    if (event == null) {
+      return false;
+    }
+    if (triggersRetry(event) || hasEnabledRules(context, event)) {
+      return true;
+    }
+
+    if (EngineConfig.get(context).isLogUnmatchedEvents()) {
+      LogWriter.instance(context).write(new EventLog(event));
+    }
+    return false;
+  }
+
+  /**
+   * @return whether the event may cause failed actions to be retried
+   */
+  private static boolean triggersRetry(Event event) {
+    String eventName = event.getEventName();
+    return eventName.equals(InternetAvailableEvent.EVENT_NAME)
+        || eventName.equals(ServiceAvailableEvent.EVENT_NAME)
+        || (eventName.equals(TimeTickEvent.EVENT_NAME)
+            && RetryScheduler.isWakeupDue(System.currentTimeMillis()));
+  }
+
+  /**
+   * Check whether an event has an enabled rule.
+   * 
+   * @param context
+   *          the context to open the rule database with
+   * @param event
+   *          the event to look up
+   * @return true if an enabled rule of an enabled application is triggered by the event
+   */
+  public static boolean hasEnabledRules(Context context, Event event) {
+    return hasEnabledRules(context, event.getAppName(), event.getEventName());
+  }
+
+  /**
+   * Check whether an event has an enabled rule.
+   * 
+   * @param context
+   *          the context to open the rule database with
+   * @param appName
+   *          the name of the application of the event
+   * @param eventName
+   *          the name of the event
+   * @return true if an enabled rule of an enabled application is triggered by the event
+   */
+  public static synchronized boolean hasEnabledRules(Context context, String appName,
+      String eventName) {
+    return getEnabledEvents(context).contains(appName + "/" + eventName);
+  }
+
+  /**
+   * Check whether any event has an enabled rule.
+   * 
+   * @param context
+   *          the context to open the rule database with
+   * @return true if there is an enabled rule of an enabled application
+   */
+  public static synchronized boolean hasEnabledRules(Context context) {
+    return !getEnabledEvents(context).isEmpty();
+  }
+
+  /**
+   * @return the application and event names of the events with enabled rules, loading them from
+   *         the database if needed
+   */
+  private static HashSet<String> getEnabledEvents(Context context) {
+    if (enabledEvents == null) {
+      HashSet<String> events = new HashSet<String>();
+      CoreRulesDbHelper coreRulesDbHelper = new CoreRulesDbHelper(context);
+      for (String[] names : coreRulesDbHelper.getEventsWithEnabledRules()) {
+        events.add(names[0] + "/" + names[1]);
+      }
+      coreRulesDbHelper.close();
+      enabledEvents = events;
+      Logger.d(TAG, enabledEvents.size() + " event(s) have enabled rules");
+    }
+    return enabledEvents;
+  }
+
+  /**
+   * Forget the events with enabled rules, must be called whenever a rule is saved, deleted, enabled
+   * or disabled.
+   */
+  public static synchronized void invalidate() {
+    enabledEvents = null;
+  }
+}
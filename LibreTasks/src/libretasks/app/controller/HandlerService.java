@@ -34,35 +34,38 @@
 package libretasks.app.controller;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 
 import android.app.Service;
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.location.Criteria;
 import android.location.Location;
 import android.location.LocationManager;
 import android.os.IBinder;
-import libretasks.app.controller.datatypes.OmniArea;
 import libretasks.app.controller.datatypes.OmniDate;
 import libretasks.app.controller.events.InternetAvailableEvent;
+import libretasks.app.controller.external.attributes.LocationCache;
 import libretasks.app.controller.events.ServiceAvailableEvent;
 import libretasks.app.controller.events.TimeTickEvent;
-import android.preference.PreferenceManager;
 import android.util.Log;
 import libretasks.app.R;
 import libretasks.app.controller.util.Logger;
 import libretasks.app.controller.util.OmnidroidException;
-import libretasks.app.model.CoreActionLogsDbHelper;
+import libretasks.app.controller.util.SlidingWindowCounter;
 import libretasks.app.model.CoreActionsDbHelper;
-import libretasks.app.model.CoreEventLogsDbHelper;
-import libretasks.app.model.CoreGeneralLogsDbHelper;
 import libretasks.app.model.CoreRulesDbHelper;
 import libretasks.app.model.ActionLog;
+import libretasks.app.model.EventJournal;
 import libretasks.app.model.EventLog;
 import libretasks.app.model.FailedActionsDbHelper;
 import libretasks.app.model.GeneralLog;
+import libretasks.app.model.LogWriter;
+import libretasks.app.model.db.LogDbAdapter;
 import libretasks.app.view.simple.UtilUI;
 
 /**
@@ -75,11 +78,13 @@ import libretasks.app.view.simple.UtilUI;
 public class HandlerService extends Service {
   private static final String TAG = HandlerService.class.getSimpleName();
 
-  // Limit the number of rules that can be applied in any minute (stored in string form)
-  private static final String THROTTLE_DEFAULT = "10";
+  // Events received during the last minute by event type, shared by every instance of this
+  // service, null until the first event of the process
+  private static HashMap<String, SlidingWindowCounter> recentEvents;
 
-  // Throttle disabled value
-  private static final int THROTTLE_DISABLED = 0;
+  // Recent firings of each rule, shared by every instance of this service
+  private static final RuleRateLimiter ruleRateLimiter = new RuleRateLimiter(
+      RuleRateLimiter.LIMIT_DISABLED);
 
   /**
    * @see android.app.Service#onCreate()
@@ -92,50 +97,155 @@ public class HandlerService extends Service {
   /**
    * TODO(acase): Write Test Units for this.
    * 
+   * @param event
+   *          the event to check, only events of the same type count towards its limit
+   * @param eventCounter
+   *          the counter of recent events of that type
    * @return true if over throttle limit, false otherwise.
    */
-  private boolean throttled() {
+  private boolean throttled(Event event, SlidingWindowCounter eventCounter) {
     // Default is not throttled
     boolean throttled = false;
 
     // Get throttle setting
-    /* Unfortunately Android doesn't support integer based arrays with the ListPreference
-     * interface, so we have to convert an integer back from a string.  See:
-     * http://code.google.com/p/android/issues/detail?id=2096
-     */
-    SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(this);
-    String sThrottle = prefs.getString(getString(R.string.pref_key_throttle), THROTTLE_DEFAULT);
-    int throttle = Integer.parseInt(sThrottle);
-
-    CoreEventLogsDbHelper coreEventLogsDbHelper = new CoreEventLogsDbHelper(this);
+    int throttle = EngineConfig.get(this).getThrottle();
 
     /*
      * See how many events we've taken in the last minute and if it's higher than our throttle
      * limit, then log/notify that this event is being ignored due to a possible loop or abuse.
      */
-    if ((throttle != THROTTLE_DISABLED)
-        && (coreEventLogsDbHelper.getLogCountDuringLastMinute() > throttle)) {
+    int eventCount = eventCounter.count(System.currentTimeMillis());
+    if ((throttle != EngineConfig.THROTTLE_DISABLED) && (eventCount > throttle)) {
       // Log event to logcat
-      String log = getString(R.string.throttle_alert_msg, throttle, coreEventLogsDbHelper
-          .getLogCountDuringLastMinute());
+      String log = getString(R.string.throttle_alert_msg, throttle, eventCount,
+          event.getEventName());
       Logger.w(TAG, log);
 
       // Log event in DB
-      CoreGeneralLogsDbHelper coreGeneralLogsDbHelper = new CoreGeneralLogsDbHelper(this);
-      GeneralLog generalLog = new GeneralLog(log, Logger.INFO);
-      coreGeneralLogsDbHelper.insert(generalLog);
-      coreGeneralLogsDbHelper.close();
+      LogWriter.instance(this).write(new GeneralLog(log, Logger.INFO));
 
       // Send user notification
       UtilUI.showNotification(this, UtilUI.NOTIFICATION_WARN,
           getString(R.string.throttle_alert_title), log.toString());
       throttled = true;
     }
-    
-    coreEventLogsDbHelper.close();
+
     return throttled;
   }
 
+  /**
+   * Checks whether the event was caused by a chain of rule actions long enough to be a loop, and
+   * if so logs/notifies that it is being ignored.
+   * 
+   * @param event
+   *          the event to check
+   * @return true if the event is part of a rule loop, false otherwise.
+   */
+  private boolean looping(Event event) {
+    if (!CausalChain.isLoop(event)) {
+      return false;
+    }
+
+    String log = getString(R.string.loop_alert_msg, event.getEventName(), event.getChainDepth());
+    Logger.w(TAG, log);
+    LogWriter.instance(this).write(new GeneralLog(log, Logger.INFO));
+    UtilUI.showNotification(this, UtilUI.NOTIFICATION_WARN, getString(R.string.loop_alert_title),
+        log);
+    return true;
+  }
+
+  /**
+   * Returns the shared per rule rate limiter, updated with the current rule throttle setting.
+   * 
+   * @return the rule rate limiter
+   */
+  private RuleRateLimiter getRuleRateLimiter() {
+    ruleRateLimiter.setLimit(EngineConfig.get(this).getRuleThrottle());
+    return ruleRateLimiter;
+  }
+
+  /**
+   * Drop the firing history of rules that have not fired recently, must be called after any change
+   * to the rules so that deleted rules are not tracked forever.
+   */
+  public static void rulesChanged() {
+    ruleRateLimiter.evictIdle();
+  }
+
+  /**
+   * Returns the counter of events of a type received during the last minute. The first call in a
+   * process has the {@link LogWriter} thread seed the counters with the events of the previous
+   * process from the {@link EventJournal}, so restarting the process doesn't reset the throttle;
+   * after that they are kept in memory only.
+   * 
+   * @param event
+   *          an event of the type to count
+   * @return the shared counter of recent events of that type
+   */
+  private SlidingWindowCounter getRecentEvents(Event event) {
+    synchronized (HandlerService.class) {
+      if (recentEvents == null) {
+        recentEvents = new HashMap<String, SlidingWindowCounter>();
+        seedRecentEvents(System.currentTimeMillis());
+      }
+      return getRecentEvents(getEventType(event.getAppName(), event.getEventName()));
+    }
+  }
+
+  /**
+   * @return the key of an event type in {@link #recentEvents}
+   */
+  private static String getEventType(String appName, String eventName) {
+    return appName + "/" + eventName;
+  }
+
+  /**
+   * Must be called while holding the lock on this class.
+   * 
+   * @return the counter of recent events of a type, created if there is none yet
+   */
+  private static SlidingWindowCounter getRecentEvents(String type) {
+    SlidingWindowCounter counter = recentEvents.get(type);
+    if (counter == null) {
+      counter = new SlidingWindowCounter(LogDbAdapter.TIME_IN_MINUTE);
+      recentEvents.put(type, counter);
+    }
+    return counter;
+  }
+
+  /**
+   * Add the events recorded within the minute before {@code created} to the counters, in the
+   * background.
+   * 
+   * @param created
+   *          time the counters were created, later events are added by onStart
+   */
+  private void seedRecentEvents(final long created) {
+    final Context context = getApplicationContext();
+    LogWriter.instance(this).execute(new Runnable() {
+      public void run() {
+        List<EventLog> eventLogs = EventJournal.instance(context).query(
+            created - LogDbAdapter.TIME_IN_MINUTE, created);
+        HashMap<String, List<Long>> timestamps = new HashMap<String, List<Long>>();
+        for (EventLog eventLog : eventLogs) {
+          String type = getEventType(eventLog.getAppName(), eventLog.getEventName());
+          List<Long> typeTimestamps = timestamps.get(type);
+          if (typeTimestamps == null) {
+            typeTimestamps = new ArrayList<Long>();
+            timestamps.put(type, typeTimestamps);
+          }
+          typeTimestamps.add(eventLog.getTimestamp());
+        }
+        synchronized (HandlerService.class) {
+          for (Map.Entry<String, List<Long>> entry : timestamps.entrySet()) {
+            Collections.sort(entry.getValue());
+            getRecentEvents(entry.getKey()).addEarlier(entry.getValue());
+          }
+        }
+      }
+    });
+  }
+
   /**
    * Gets the event type from the intent, checks it against defined rules, and launches any
    * triggered actions
@@ -144,19 +254,29 @@ public class HandlerService extends Service {
    */
   @Override
   public void onStart(Intent intent, int id) {
-    addGlobalAttributesToIntent(intent);
+    long eventTime = System.currentTimeMillis();
+    CausalChain.stamp(intent);
     Event event = IntentParser.getEvent(intent);
 
     if (event != null) {
-      // Log the event that occurred
-      CoreEventLogsDbHelper coreEventLogsDbHelper = new CoreEventLogsDbHelper(this);
+      addGlobalAttributesToIntent(intent, event, eventTime);
+
+      // Log the event that occurred, the log is written in the background
+      LogWriter logWriter = LogWriter.instance(this);
       EventLog logEvent = new EventLog(event);
-      Long logID = coreEventLogsDbHelper.insert(logEvent);
-      coreEventLogsDbHelper.close();
-      logEvent.setID(logID);
+      // Created before the event is queued, so seeding it can't count the event twice
+      SlidingWindowCounter eventCounter = getRecentEvents(event);
+      logWriter.write(logEvent);
+      eventCounter.add(logEvent.getTimestamp());
+
+      // Don't run if we're over our throttle threshold for this type of event
+      if (throttled(event, eventCounter)) {
+        return;
+      }
 
-      // Don't run if we're over our throttle threshold
-      if (throttled()) {
+      // Don't run events caused by a rule loop
+      if (looping(event)) {
+        stopSelf();
         return;
       }
 
@@ -164,35 +284,37 @@ public class HandlerService extends Service {
       CoreRulesDbHelper coreRuleDbHelper = new CoreRulesDbHelper(this);
       CoreActionsDbHelper coreActionsDbHelper = new CoreActionsDbHelper(this);
 
-      // Open our Log accessor utilities to do some log checking/updating
-      CoreActionLogsDbHelper coreActionLogsDbHelper = new CoreActionLogsDbHelper(this);
-
       // Get a list of actions that apply to this event.
       ArrayList<Action> actions = RuleProcessor.getActions(event, coreRuleDbHelper,
-          coreActionsDbHelper);
+          coreActionsDbHelper, getRuleRateLimiter());
 
       // Close Rule/Action Database connections
       coreActionsDbHelper.close();
       coreRuleDbHelper.close();
 
+      // Leave out actions made redundant by other actions of this event
+      HashMap<Action, String> coalesced = new HashMap<Action, String>();
+      ArrayList<Action> optimized = ActionBatchOptimizer.optimize(actions, coalesced);
+      ActionBatchOptimizer.removeNoOps(optimized, DeviceState.instance(this), coalesced);
+
       // Log the actions taking place
       for (Action action : actions) {
-        ActionLog logAction = new ActionLog(action, logEvent.getID());
-        coreActionLogsDbHelper.insert(logAction);
+        String note = coalesced.get(action);
+        if (note == null) {
+          logWriter.write(new ActionLog(action, logEvent));
+        } else {
+          logWriter.write(new ActionLog(action, logEvent, note));
+        }
       }
-      coreActionLogsDbHelper.close();
 
       // Create a general log about what is going on
-      CoreGeneralLogsDbHelper coreGeneralLogsDbHelper = new CoreGeneralLogsDbHelper(this);
-      GeneralLog generalLog = new GeneralLog(TAG + " got " + actions.size()
-          + " action(s) for event " + intent.getAction(), Logger.INFO);
-      coreGeneralLogsDbHelper.insert(generalLog);
-      coreGeneralLogsDbHelper.close();
+      logWriter.write(new GeneralLog(TAG + " got " + actions.size() + " action(s) for event "
+          + intent.getAction(), Logger.INFO));
       Logger.d(TAG, "got " + actions.size() + " action(s) for event " + intent.getAction());
 
       // Execute the list of actions.
       try {
-        ActionExecuter.executeActions(this, actions);
+        ActionExecuter.executeActions(this, optimized);
       } catch (OmnidroidException e) {
         Logger.w(TAG, e.toString(), e);
         Logger.w(TAG, e.getLocalizedMessage());
@@ -201,16 +323,24 @@ public class HandlerService extends Service {
         actions.clear();
       }
       
-      FailedActionsDbHelper failedActionsDbHelper = new FailedActionsDbHelper(this);
+      // Retry queued actions whose failure condition cleared, or whose retry is due
+      long now = System.currentTimeMillis();
       if (event.getEventName().equals(InternetAvailableEvent.EVENT_NAME)) {
+        FailedActionsDbHelper failedActionsDbHelper = new FailedActionsDbHelper(this);
         actions = failedActionsDbHelper.getActions(ResultProcessor.RESULT_FAILURE_INTERNET);
+        failedActionsDbHelper.close();
       } else if (event.getEventName().equals(ServiceAvailableEvent.EVENT_NAME)) {
+        FailedActionsDbHelper failedActionsDbHelper = new FailedActionsDbHelper(this);
         actions = failedActionsDbHelper.getActions(ResultProcessor.RESULT_FAILURE_SERVICE);
-      } else if (event.getEventName().equals(TimeTickEvent.EVENT_NAME)) {
+        failedActionsDbHelper.close();
+      } else if (event.getEventName().equals(TimeTickEvent.EVENT_NAME)
+          && RetryScheduler.isWakeupDue(now)) {
+        FailedActionsDbHelper failedActionsDbHelper = new FailedActionsDbHelper(this);
         failedActionsDbHelper.deleteOldActions();
-        actions = failedActionsDbHelper.getActions(ResultProcessor.RESULT_FAILURE_UNKNOWN);
+        actions = failedActionsDbHelper.getDueActions(ResultProcessor.RESULT_FAILURE_UNKNOWN, now);
+        RetryScheduler.setNextWakeup(failedActionsDbHelper.getNextWakeup());
+        failedActionsDbHelper.close();
       }
-      failedActionsDbHelper.close();
       try {
         Logger.i(TAG, "Retrying to execute queued actions");
         ActionExecuter.executeActions(this, actions);;
@@ -224,17 +354,24 @@ public class HandlerService extends Service {
   }
 
   /**
-   * Add global attributes of an event to the extra values of the intent.
+   * Add the global attributes used by the rules of an event to the extra values of the intent.
+   * Attributes no rule asks for are not looked up.
    * 
    * @param intent
    *          the intent to modify
+   * @param event
+   *          the event parsed from the intent
+   * @param eventTime
+   *          the time the intent was received
    */
-  private void addGlobalAttributesToIntent(Intent intent) {
-    if (!intent.hasExtra(Event.ATTRIBUTE_TIME)) {
-      insertTimeStamp(intent);
+  private void addGlobalAttributesToIntent(Intent intent, Event event, long eventTime) {
+    if (!intent.hasExtra(Event.ATTRIBUTE_TIME)
+        && AttributeDemand.isUsed(this, event, Event.ATTRIBUTE_TIME)) {
+      insertTimeStamp(intent, eventTime);
     }
 
-    if (!intent.hasExtra(Event.ATTRIBUTE_LOCATION)) {
+    if (!intent.hasExtra(Event.ATTRIBUTE_LOCATION)
+        && AttributeDemand.isUsed(this, event, Event.ATTRIBUTE_LOCATION)) {
       insertLocationData(intent);
     }
   }
@@ -244,9 +381,11 @@ public class HandlerService extends Service {
    * 
    * @param intent
    *          the intent to modify
+   * @param time
+   *          the time to insert
    */
-  private void insertTimeStamp(Intent intent) {
-    Date date = new Date(System.currentTimeMillis());
+  private void insertTimeStamp(Intent intent, long time) {
+    Date date = new Date(time);
     OmniDate omniDate = new OmniDate(date);
 
     intent.putExtra(Event.ATTRIBUTE_TIME, omniDate.toString());
@@ -259,18 +398,31 @@ public class HandlerService extends Service {
    *          the intent to modify
    */
   private void insertLocationData(Intent intent) {
+    LocationCache.Fix fix = LocationCache.getLastFix();
+    if (fix == null || !LocationCache.isMonitored()) {
+      // Nothing keeps the cache current, so ask the location service
+      fix = queryLastKnownLocation();
+    }
+    intent.putExtra(Event.ATTRIBUTE_LOCATION, (fix != null) ? fix.getText() : "");
+  }
+
+  /**
+   * Get the last known location from the best enabled provider and store it in the
+   * {@link LocationCache}.
+   * 
+   * @return the last known location, or null if it is not available
+   */
+  private LocationCache.Fix queryLastKnownLocation() {
     LocationManager locationManager = (LocationManager) getSystemService(Context.LOCATION_SERVICE);
     Location location = null;
 
     String bestProvider = locationManager.getBestProvider(new Criteria(), true);
-    String locationData;
+    LocationCache.Fix fix;
     try {
       location = locationManager.getLastKnownLocation(bestProvider);
-      OmniArea newLocation = new OmniArea(null, location.getLatitude(), location.getLongitude(),
-          location.getAccuracy());
-      locationData = newLocation.toString();
+      fix = LocationCache.update(location);
     } catch (Exception e) {
-      locationData = "";
+      fix = null;
 
       if (location == null) {
         /*
@@ -284,8 +436,7 @@ public class HandlerService extends Service {
         Logger.w(TAG, getString(R.string.location_unknown_error), e);
       }
     }
-
-    intent.putExtra(Event.ATTRIBUTE_LOCATION, locationData);
+    return fix;
   }
   
   /**
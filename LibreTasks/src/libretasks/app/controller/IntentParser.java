@@ -33,6 +33,10 @@
  *******************************************************************************/
 package libretasks.app.controller;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
 import libretasks.app.controller.events.LocationChangedEvent;
 import libretasks.app.controller.events.InternetAvailableEvent;
 import libretasks.app.controller.events.MissedCallEvent;
@@ -44,7 +48,6 @@ import libretasks.app.controller.events.SystemBroadcastedEvent;
 import libretasks.app.controller.events.SystemEvent;
 import libretasks.app.controller.events.TimeTickEvent;
 import android.content.Intent;
-import android.util.Log;
 
 /**
  * This class parses the received {@link android.content.Intent}'s action field to see if it is an
@@ -56,12 +59,90 @@ public class IntentParser {
   public static final String SMS_INTENT_ACTION = "android.provider.Telephony.SMS_RECEIVED";
   public static final String GMAIL_INTENT_ACTION = "android.intent.action.PROVIDER_CHANGED";
 
+  /** Creates the event for an intent */
+  public interface EventFactory {
+    Event create(Intent intent);
+  }
+
+  /**
+   * Event factories by intent action. The map is never modified once published, registering a
+   * factory replaces it with an updated copy.
+   */
+  private static volatile Map<String, EventFactory> factories;
+
+  static {
+    HashMap<String, EventFactory> initial = new HashMap<String, EventFactory>();
+    for (final SystemEvent e : SystemEvent.values()) {
+      initial.put(e.ACTION_NAME, new EventFactory() {
+        public Event create(Intent intent) {
+          return new SystemBroadcastedEvent(intent, e);
+        }
+      });
+    }
+    initial.put(SMS_INTENT_ACTION, new EventFactory() {
+      public Event create(Intent intent) {
+        return new SMSReceivedEvent(intent);
+      }
+    });
+    initial.put(LocationChangedEvent.ACTION_NAME, new EventFactory() {
+      public Event create(Intent intent) {
+        return new LocationChangedEvent(intent);
+      }
+    });
+    initial.put(PhoneRingingEvent.ACTION_NAME, new EventFactory() {
+      public Event create(Intent intent) {
+        return new PhoneRingingEvent(intent);
+      }
+    });
+    initial.put(CallEndedEvent.ACTION_NAME, new EventFactory() {
+      public Event create(Intent intent) {
+        return new CallEndedEvent(intent);
+      }
+    });
+    initial.put(TimeTickEvent.ACTION_NAME, new EventFactory() {
+      public Event create(Intent intent) {
+        return new TimeTickEvent(intent);
+      }
+    });
+    initial.put(ServiceAvailableEvent.ACTION_NAME, new EventFactory() {
+      public Event create(Intent intent) {
+        return new ServiceAvailableEvent(intent);
+      }
+    });
+    initial.put(InternetAvailableEvent.ACTION_NAME, new EventFactory() {
+      public Event create(Intent intent) {
+        return new InternetAvailableEvent(intent);
+      }
+    });
+    initial.put(MissedCallEvent.ACTION_NAME, new EventFactory() {
+      public Event create(Intent intent) {
+        return new MissedCallEvent(intent);
+      }
+    });
+    factories = Collections.unmodifiableMap(initial);
+  }
+
   /**
    * This is a static utility class which cannot be instantiated.
    */
   private IntentParser() {
   }
 
+  /**
+   * Register the factory for the event of an intent action, replacing any factory registered for
+   * the same action.
+   * 
+   * @param intentAction
+   *          the intent action of the event
+   * @param factory
+   *          factory that creates the event
+   */
+  public static synchronized void register(String intentAction, EventFactory factory) {
+    HashMap<String, EventFactory> updated = new HashMap<String, EventFactory>(factories);
+    updated.put(intentAction, factory);
+    factories = Collections.unmodifiableMap(updated);
+  }
+
   /**
    * Given an intent with a supported action type, create and return an Event of the appropriate
    * type. If the action is not supported, null is returned.
@@ -71,33 +152,7 @@ public class IntentParser {
    * @return an Omnidroid Event type that contains the methods to get at the event's data attributes
    */
   public static Event getEvent(Intent intent) {
-    Log.d("IntentParser:", "get Intent with action: " + intent.getAction());
-    Event event = null;
-    if (intent.getAction().equals(SMS_INTENT_ACTION)) {
-      // Handle SMS event
-      event = new SMSReceivedEvent(intent);
-    } else if (intent.getAction().equals(LocationChangedEvent.ACTION_NAME)) {
-      event = new LocationChangedEvent(intent);
-    } else if (intent.getAction().equals(PhoneRingingEvent.ACTION_NAME)) {
-      event = new PhoneRingingEvent(intent);
-    } else if (intent.getAction().equals(CallEndedEvent.ACTION_NAME)) {
-      event = new CallEndedEvent(intent);
-    } else if (intent.getAction().equals(TimeTickEvent.ACTION_NAME)) {
-      event = new TimeTickEvent(intent);
-    } else if (intent.getAction().equals(ServiceAvailableEvent.ACTION_NAME)) {
-      event = new ServiceAvailableEvent(intent);
-    } else if (intent.getAction().equals(InternetAvailableEvent.ACTION_NAME)) {
-      event = new InternetAvailableEvent(intent);
-    } else if (intent.getAction().equals(MissedCallEvent.ACTION_NAME)) {
-      event = new MissedCallEvent(intent);
-    } else {
-      for (SystemEvent e : SystemEvent.values()) {
-        if (intent.getAction().equals(e.ACTION_NAME)) {
-          Log.d("IntentParser:", e.ACTION_NAME);
-          event = new SystemBroadcastedEvent(intent, e);
-        }
-      }
-    }
-    return event;
+    EventFactory factory = factories.get(intent.getAction());
+    return (factory != null) ? factory.create(intent) : null;
   }
 }
@@ -0,0 +1,143 @@
+/*  
+ * Copyright (c) 2016  LibreTasks - https://github.com/biotinker/LibreTasks  
+ *  
+ *  This file is free software: you may copy, redistribute and/or modify it  
+ *  under the terms of the GNU General Public License as published by the  
+ *  Free Software Foundation, either version 3 of the License, or (at your  
+ *  option) any later version.  
+ *  
+ *  This file is distributed in the hope that it will be useful, but  
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of  
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU  
+ *  General Public License for more details.  
+ *  
+ *  You should have received a copy of the GNU General Public License  
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package libretasks.app.controller;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Handler;
+import android.os.Looper;
+import libretasks.app.controller.util.Logger;
+
+/**
+ * Runs the work of action services off the main thread. Actions on different resources run
+ * concurrently, while actions on the same resource (the ringer mode, a radio, media playback) run
+ * one at a time in the order they were submitted, so the last action submitted for a resource
+ * decides its final state.
+ */
+public class ResourceExecutor {
+  private static final String TAG = ResourceExecutor.class.getSimpleName();
+
+  /** Resources shared by actions */
+  public static final String RESOURCE_RINGER = "Ringer";
+  public static final String RESOURCE_WIFI = "Wifi";
+  public static final String RESOURCE_BLUETOOTH = "Bluetooth";
+  public static final String RESOURCE_MEDIA = "Media";
+  public static final String RESOURCE_BRIGHTNESS = "Brightness";
+
+  /** Number of actions that may run at the same time */
+  private static final int POOL_SIZE = 4;
+
+  private static final ExecutorService pool = Executors.newFixedThreadPool(POOL_SIZE);
+
+  /** Tasks waiting for each resource, a resource has an entry while one of its tasks is running */
+  private static final HashMap<String, LinkedList<Runnable>> pending =
+      new HashMap<String, LinkedList<Runnable>>();
+
+  private static final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+  /**
+   * Submit an action task.
+   * 
+   * @param resource
+   *          the resource the task changes, or null if it can run alongside any other task
+   * @param task
+   *          the task to run
+   */
+  public static void execute(final String resource, final Runnable task) {
+    if (resource == null) {
+      pool.execute(guard(task));
+      return;
+    }
+
+    synchronized (pending) {
+      LinkedList<Runnable> queue = pending.get(resource);
+      if (queue != null) {
+        // Another task is using the resource, it starts this one when done
+        queue.add(task);
+        return;
+      }
+      pending.put(resource, new LinkedList<Runnable>());
+    }
+    pool.execute(serial(resource, task));
+  }
+
+  /**
+   * Report the result of an action task to the {@link ResultProcessor}. The result is processed on
+   * the main thread since it may show a notification or a toast.
+   * 
+   * @param context
+   *          the context of the action service
+   * @param intent
+   *          the intent of the action
+   * @param result
+   *          the result code, see {@link ResultProcessor}
+   * @param message
+   *          the message to show, or null for none
+   */
+  public static void reportResult(final Context context, final Intent intent, final int result,
+      final String message) {
+    mainHandler.post(new Runnable() {
+      public void run() {
+        ResultProcessor.process(context, intent, result, message);
+      }
+    });
+  }
+
+  /**
+   * Wraps a task on a resource so it starts the next task waiting for that resource when done.
+   */
+  private static Runnable serial(final String resource, final Runnable task) {
+    return new Runnable() {
+      public void run() {
+        try {
+          guard(task).run();
+        } finally {
+          Runnable next;
+          synchronized (pending) {
+            next = pending.get(resource).poll();
+            if (next == null) {
+              pending.remove(resource);
+            }
+          }
+          if (next != null) {
+            pool.execute(serial(resource, next));
+          }
+        }
+      }
+    };
+  }
+
+  /**
+   * Wraps a task so a failing action doesn't take down its worker thread.
+   */
+  private static Runnable guard(final Runnable task) {
+    return new Runnable() {
+      public void run() {
+        try {
+          task.run();
+        } catch (RuntimeException e) {
+          Logger.w(TAG, "Action task failed", e);
+        }
+      }
+    };
+  }
+}
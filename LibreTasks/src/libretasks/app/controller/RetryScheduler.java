@@ -0,0 +1,103 @@
+/*  
+ * Copyright (c) 2016  LibreTasks - https://github.com/biotinker/LibreTasks  
+ *  
+ *  This file is free software: you may copy, redistribute and/or modify it  
+ *  under the terms of the GNU General Public License as published by the  
+ *  Free Software Foundation, either version 3 of the License, or (at your  
+ *  option) any later version.  
+ *  
+ *  This file is distributed in the hope that it will be useful, but  
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of  
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU  
+ *  General Public License for more details.  
+ *  
+ *  You should have received a copy of the GNU General Public License  
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package libretasks.app.controller;
+
+import java.util.Random;
+
+import libretasks.app.model.db.LogDbAdapter;
+
+/**
+ * Decides when failed actions are retried. Each failed action records how often it was attempted
+ * and when it may run next; the delay doubles with every failed attempt, up to
+ * {@link #MAX_DELAY}, and is randomized so that actions failing together don't retry together.
+ * <p>
+ * Actions waiting for the internet or a service are retried as soon as it becomes available. The
+ * other failed actions are retried on time ticks, and the scheduler remembers the earliest time
+ * anything is due (a retry or the expiry of an old failed action) so that time ticks before then
+ * don't touch the database.
+ * </p>
+ */
+public class RetryScheduler {
+  private static final String TAG = RetryScheduler.class.getSimpleName();
+
+  /** Delay (in milliseconds) before the first retry */
+  private static final long BASE_DELAY = LogDbAdapter.TIME_IN_MINUTE;
+
+  /** Longest delay (in milliseconds) between two retries */
+  private static final long MAX_DELAY = 16 * LogDbAdapter.TIME_IN_MINUTE;
+
+  /** Value of the next wakeup while it has not been read from the database */
+  private static final long UNKNOWN = -1;
+
+  private static final Random random = new Random();
+
+  /** The earliest time a failed action needs attention, or {@link #UNKNOWN} */
+  private static long nextWakeup = UNKNOWN;
+
+  /**
+   * Get the delay before the next retry of an action.
+   * 
+   * @param attempts
+   *          the number of times the action was attempted so far
+   * @return the delay in milliseconds, between half and all of the exponential backoff
+   */
+  public static long getRetryDelay(int attempts) {
+    long delay = BASE_DELAY;
+    for (int i = 1; i < attempts && delay < MAX_DELAY; i++) {
+      delay *= 2;
+    }
+    delay = Math.min(delay, MAX_DELAY);
+
+    long jitter;
+    synchronized (random) {
+      jitter = (long) (random.nextDouble() * (delay / 2));
+    }
+    return delay / 2 + jitter;
+  }
+
+  /**
+   * @param now
+   *          the current time in milliseconds
+   * @return true if a failed action may need attention, false if there is nothing to do before a
+   *         later time
+   */
+  public static synchronized boolean isWakeupDue(long now) {
+    return nextWakeup == UNKNOWN || nextWakeup <= now;
+  }
+
+  /**
+   * Set the earliest time a failed action needs attention, as read from the database.
+   * 
+   * @param time
+   *          the time in milliseconds, {@link Long#MAX_VALUE} if there are no failed actions
+   */
+  public static synchronized void setNextWakeup(long time) {
+    nextWakeup = time;
+  }
+
+  /**
+   * Record that a failed action needs attention at the given time.
+   * 
+   * @param time
+   *          the time in milliseconds
+   */
+  public static synchronized void wakeupAt(long time) {
+    if (nextWakeup != UNKNOWN && time < nextWakeup) {
+      nextWakeup = time;
+    }
+  }
+}
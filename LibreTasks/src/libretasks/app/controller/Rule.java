@@ -111,6 +111,7 @@ public class Rule {
     ArrayList<Action> actionsList = coreActionsDbHelper.getActions(ruleID, ruleName, event);
     for (Action action : actionsList) {
       action.setNotification(showNotification);
+      action.setCausalChain(event);
     }
     return actionsList;
   }
@@ -62,10 +62,12 @@ public class RuleProcessor {
    *          The helper class to get actions data from database
    * @param event
    *          the event that will be compared to all defined user rules
+   * @param rateLimiter
+   *          the per rule rate limits to apply, rules over their limit are skipped. Can be null.
    * @return the list of actions to be performed based on the rules triggered by this event
    */
   public static ArrayList<Action> getActions(Event event, CoreRulesDbHelper coreRuleDbHelper,
-      CoreActionsDbHelper coreActionsDbHelper) {
+      CoreActionsDbHelper coreActionsDbHelper, RuleRateLimiter rateLimiter) {
 
     ArrayList<Rule> rules = coreRuleDbHelper.getRulesMatchingEvent(event.getAppName(), event
         .getEventName());
@@ -75,6 +77,11 @@ public class RuleProcessor {
     ArrayList<Action> actions = new ArrayList<Action>();
     for (Rule currentRule : rules) {
       if (currentRule.passesFilters(event)) {
+        if (rateLimiter != null && !rateLimiter.tryFire(currentRule)) {
+          Logger.w(TAG, "Rule " + currentRule.ruleName + " reached its limit of "
+              + rateLimiter.getLimit() + " firing(s) in the last minute, skipping its actions");
+          continue;
+        }
         actions.addAll(currentRule.getActions(coreActionsDbHelper, event)) ;
       }
     }
@@ -0,0 +1,92 @@
+/*  
+ * Copyright (c) 2016  LibreTasks - https://github.com/biotinker/LibreTasks  
+ *  
+ *  This file is free software: you may copy, redistribute and/or modify it  
+ *  under the terms of the GNU General Public License as published by the  
+ *  Free Software Foundation, either version 3 of the License, or (at your  
+ *  option) any later version.  
+ *  
+ *  This file is distributed in the hope that it will be useful, but  
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of  
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU  
+ *  General Public License for more details.  
+ *  
+ *  You should have received a copy of the GNU General Public License  
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package libretasks.app.controller;
+
+import java.util.HashMap;
+import java.util.Iterator;
+
+import libretasks.app.controller.util.SlidingWindowCounter;
+import libretasks.app.model.db.LogDbAdapter;
+
+/**
+ * Limits how many times each {@link Rule} may fire per minute, so that a single runaway rule is
+ * stopped without holding back the others.
+ */
+public class RuleRateLimiter {
+
+  /** Rate limit disabled value */
+  public static final int LIMIT_DISABLED = 0;
+
+  /** Number of times a rule may fire per minute */
+  private int limit;
+
+  /** Recent firings of each rule, by rule ID */
+  private final HashMap<Long, SlidingWindowCounter> firings =
+      new HashMap<Long, SlidingWindowCounter>();
+
+  /**
+   * @param limit
+   *          number of times a rule may fire per minute, {@link #LIMIT_DISABLED} for no limit
+   */
+  public RuleRateLimiter(int limit) {
+    this.limit = limit;
+  }
+
+  public synchronized void setLimit(int limit) {
+    this.limit = limit;
+  }
+
+  public synchronized int getLimit() {
+    return limit;
+  }
+
+  /**
+   * Record a firing of the rule if it is still under its limit.
+   * 
+   * @param rule
+   *          the rule about to fire
+   * @return true if the rule may fire, false if it has reached its limit for the last minute
+   */
+  public synchronized boolean tryFire(Rule rule) {
+    long now = System.currentTimeMillis();
+    SlidingWindowCounter counter = firings.get(rule.ruleID);
+    if (counter == null) {
+      counter = new SlidingWindowCounter(LogDbAdapter.TIME_IN_MINUTE);
+      firings.put(rule.ruleID, counter);
+    }
+
+    if (limit != LIMIT_DISABLED && counter.count(now) >= limit) {
+      return false;
+    }
+    counter.add(now);
+    return true;
+  }
+
+  /**
+   * Forget the rules that have not fired within the last minute, which includes every deleted rule
+   * once its last firing has expired.
+   */
+  public synchronized void evictIdle() {
+    long now = System.currentTimeMillis();
+    Iterator<SlidingWindowCounter> counters = firings.values().iterator();
+    while (counters.hasNext()) {
+      if (counters.next().count(now) == 0) {
+        counters.remove();
+      }
+    }
+  }
+}
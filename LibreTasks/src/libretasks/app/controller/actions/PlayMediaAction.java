@@ -23,6 +23,7 @@ import java.util.HashMap;
 
 import android.content.Intent;
 import libretasks.app.controller.Action;
+import libretasks.app.controller.ResourceExecutor;
 import libretasks.app.controller.external.actions.MediaActionService;
 import libretasks.app.controller.util.OmnidroidException;
 
@@ -50,6 +51,11 @@ public class PlayMediaAction extends OmniAction {
     return intent;
   }
 
+  @Override
+  public String getResource() {
+    return ResourceExecutor.RESOURCE_MEDIA;
+  }
+
   @Override
   public String getDescription() {
 	  return APP_NAME + "-" + ACTION_NAME;
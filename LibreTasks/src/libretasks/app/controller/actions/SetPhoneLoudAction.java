@@ -37,6 +37,7 @@ import java.util.HashMap;
 
 import android.content.Intent;
 import libretasks.app.controller.Action;
+import libretasks.app.controller.ResourceExecutor;
 import libretasks.app.controller.external.actions.SettingsActionService;
 import libretasks.app.controller.util.OmnidroidException;
 
@@ -64,6 +65,11 @@ public class SetPhoneLoudAction extends OmniAction {
     return intent;
   }
 
+  @Override
+  public String getResource() {
+    return ResourceExecutor.RESOURCE_RINGER;
+  }
+
   @Override
   public String getDescription() {
     return APP_NAME + "-" + ACTION_NAME;
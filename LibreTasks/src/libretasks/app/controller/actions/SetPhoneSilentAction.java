@@ -36,7 +36,10 @@ package libretasks.app.controller.actions;
 import java.util.HashMap;
 
 import android.content.Intent;
+import android.media.AudioManager;
 import libretasks.app.controller.Action;
+import libretasks.app.controller.DeviceState;
+import libretasks.app.controller.ResourceExecutor;
 import libretasks.app.controller.external.actions.SettingsActionService;
 import libretasks.app.controller.util.OmnidroidException;
 
@@ -64,6 +67,16 @@ public class SetPhoneSilentAction extends OmniAction {
     return intent;
   }
 
+  @Override
+  public String getResource() {
+    return ResourceExecutor.RESOURCE_RINGER;
+  }
+
+  @Override
+  public boolean isNoOp(DeviceState state) {
+    return state.getRingerMode() == AudioManager.RINGER_MODE_SILENT;
+  }
+
   @Override
   public String getDescription() {
     return APP_NAME + "-" + ACTION_NAME;
@@ -37,6 +37,8 @@ import java.util.HashMap;
 
 import android.content.Intent;
 import libretasks.app.controller.Action;
+import libretasks.app.controller.DeviceState;
+import libretasks.app.controller.ResourceExecutor;
 import libretasks.app.controller.external.actions.SettingsActionService;
 import libretasks.app.controller.util.ExceptionMessageMap;
 import libretasks.app.controller.util.OmnidroidException;
@@ -86,6 +88,16 @@ public class SetScreenBrightnessAction extends OmniAction {
     return intent;
   }
 
+  @Override
+  public String getResource() {
+    return ResourceExecutor.RESOURCE_BRIGHTNESS;
+  }
+
+  @Override
+  public boolean isNoOp(DeviceState state) {
+    return state.getBrightness() == brightness;
+  }
+
   @Override
   public String getDescription() {
     return APP_NAME + "-" + ACTION_NAME;
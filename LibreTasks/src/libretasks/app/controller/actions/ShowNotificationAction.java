@@ -52,6 +52,9 @@ public class ShowNotificationAction extends OmniAction {
   
   private String message = null;
 
+  /** Title of a notification merged from several rules, null to use the rule name */
+  private String title = null;
+
   public ShowNotificationAction(Map<String, String> parameters) throws OmnidroidException {
     super(SettingsActionService.class.getName(), Action.BY_SERVICE);
     message = parameters.get(PARAM_ALERT_MESSAGE);
@@ -66,13 +69,31 @@ public class ShowNotificationAction extends OmniAction {
     Intent intent = new Intent();
     intent.setClassName(LIBRETASKS_PACKAGE_NAME, SettingsActionService.class.getName());
     intent.putExtra(SettingsActionService.OPERATION_TYPE, SettingsActionService.SHOW_NOTIFICATION_ACTION);
-    intent.putExtra(PARAM_TITLE, ruleName);
+    intent.putExtra(PARAM_TITLE, getTitle());
     intent.putExtra(PARAM_ALERT_MESSAGE, message);
     intent.putExtra(DATABASE_ID, databaseId);
     intent.putExtra(ACTION_TYPE, actionType);
     return intent;
   }
 
+  /**
+   * Merge the message of another notification into this one, so both are shown as a single
+   * notification.
+   * 
+   * @param other
+   *          the notification to merge into this one
+   */
+  public void merge(ShowNotificationAction other) {
+    if (!getTitle().equals(other.getTitle())) {
+      title = getTitle() + ", " + other.getTitle();
+    }
+    message = message + "\n" + other.message;
+  }
+
+  private String getTitle() {
+    return (title != null) ? title : String.valueOf(ruleName);
+  }
+
   @Override
   public String getDescription() {
     return APP_NAME + "-" + ACTION_NAME;
@@ -37,6 +37,8 @@ import java.util.HashMap;
 
 import android.content.Intent;
 import libretasks.app.controller.Action;
+import libretasks.app.controller.DeviceState;
+import libretasks.app.controller.ResourceExecutor;
 import libretasks.app.controller.external.actions.SignalsActionService;
 import libretasks.app.controller.util.OmnidroidException;
 
@@ -64,6 +66,16 @@ public class TurnOffBluetoothAction extends OmniAction {
     return intent;
   }
 
+  @Override
+  public String getResource() {
+    return ResourceExecutor.RESOURCE_BLUETOOTH;
+  }
+
+  @Override
+  public boolean isNoOp(DeviceState state) {
+    return state.getBluetoothState() == DeviceState.OFF;
+  }
+
   @Override
   public String getDescription() {
 	  return APP_NAME + "-" + ACTION_NAME;
@@ -37,6 +37,8 @@ import java.util.HashMap;
 
 import android.content.Intent;
 import libretasks.app.controller.Action;
+import libretasks.app.controller.DeviceState;
+import libretasks.app.controller.ResourceExecutor;
 import libretasks.app.controller.external.actions.SignalsActionService;
 import libretasks.app.controller.util.OmnidroidException;
 
@@ -63,6 +65,16 @@ public class TurnOnBluetoothAction extends OmniAction {
     return intent;
   }
   
+  @Override
+  public String getResource() {
+    return ResourceExecutor.RESOURCE_BLUETOOTH;
+  }
+
+  @Override
+  public boolean isNoOp(DeviceState state) {
+    return state.getBluetoothState() == DeviceState.ON;
+  }
+
   @Override
   public String getDescription() {
 	  return APP_NAME + "-" + ACTION_NAME;
@@ -37,6 +37,7 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.Intent;
 import libretasks.app.controller.util.Logger;
+import libretasks.app.controller.EventFilter;
 import libretasks.app.controller.HandlerService;
 
 /**
@@ -50,6 +51,9 @@ public class BCReceiver extends BroadcastReceiver {
   @Override
   public void onReceive(Context context, Intent intent) {
     try {
+      if (!EventFilter.accept(context, intent)) {
+        return;
+      }
       intent.setClass(context, HandlerService.class);
       intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
       context.startService(intent);
@@ -31,6 +31,7 @@ import android.provider.Settings;
 import android.util.Log;
 import android.widget.Toast;
 import libretasks.app.R;
+import libretasks.app.controller.ResourceExecutor;
 import libretasks.app.controller.ResultProcessor;
 import libretasks.app.controller.actions.SetScreenBrightnessAction;
 import libretasks.app.controller.actions.ShowAlertAction;
@@ -49,8 +50,6 @@ public class MediaActionService extends Service {
   public static final int NO_ACTION = -1;
   public static final int PAUSE_MEDIA_ACTION = 1;
   public static final int PLAY_MEDIA_ACTION = 2;
-  
-  private Intent intent;
 
   @Override
   public IBinder onBind(Intent intent) {
@@ -58,16 +57,33 @@ public class MediaActionService extends Service {
   }
   
   @Override
-  public void onStart(Intent intent, int startId) {
+  public void onStart(final Intent intent, int startId) {
     super.onStart(intent, startId);
-    this.intent = intent;
-    int operationType = intent.getIntExtra(OPERATION_TYPE, NO_ACTION);
+    final int operationType = intent.getIntExtra(OPERATION_TYPE, NO_ACTION);
+    ResourceExecutor.execute(ResourceExecutor.RESOURCE_MEDIA, new Runnable() {
+      public void run() {
+        perform(operationType, intent);
+      }
+    });
+  }
+
+  /**
+   * Perform an operation, called on a {@link ResourceExecutor} thread.
+   * 
+   * @param operationType
+   *          the operation to perform
+   * @param intent
+   *          the intent of the action
+   */
+  private void perform(int operationType, Intent intent) {
     switch (operationType) {
     case PAUSE_MEDIA_ACTION :
       pauseMedia();
+      ResourceExecutor.reportResult(this, intent, ResultProcessor.RESULT_SUCCESS, null);
       break;
     case PLAY_MEDIA_ACTION :
       playMedia();
+      ResourceExecutor.reportResult(this, intent, ResultProcessor.RESULT_SUCCESS, null);
       break;
     default:
       Log.e("OmniActionSercive", "No such operation supported as: " + operationType);
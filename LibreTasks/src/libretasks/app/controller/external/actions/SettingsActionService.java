@@ -43,6 +43,7 @@ import android.provider.Settings;
 import android.util.Log;
 import android.widget.Toast;
 import libretasks.app.R;
+import libretasks.app.controller.ResourceExecutor;
 import libretasks.app.controller.ResultProcessor;
 import libretasks.app.controller.actions.SetScreenBrightnessAction;
 import libretasks.app.controller.actions.ShowAlertAction;
@@ -65,8 +66,6 @@ public class SettingsActionService extends Service {
   public static final int SET_PHONE_LOUD = 6;
   public static final int SET_PHONE_SILENT = 7;
   public static final int SET_PHONE_VIBRATE = 8;
-  
-  private Intent intent;
 
   @Override
   public IBinder onBind(Intent intent) {
@@ -74,28 +73,65 @@ public class SettingsActionService extends Service {
   }
   
   @Override
-  public void onStart(Intent intent, int startId) {
+  public void onStart(final Intent intent, int startId) {
     super.onStart(intent, startId);
-    this.intent = intent;
-    int operationType = intent.getIntExtra(OPERATION_TYPE, NO_ACTION);
+    final int operationType = intent.getIntExtra(OPERATION_TYPE, NO_ACTION);
     switch (operationType) {
     case SHOW_ALERT_ACTION :
+      // Toasts and notifications are shown from the main thread
       showAlert(intent);
       break;
     case SHOW_NOTIFICATION_ACTION :
       showNotification(intent);
       break;
+    default:
+      ResourceExecutor.execute(getResource(operationType), new Runnable() {
+        public void run() {
+          perform(operationType, intent);
+        }
+      });
+    }
+  }
+
+  /**
+   * @param operationType
+   *          the operation to perform
+   * @return the resource changed by the operation, or null if it changes no shared resource
+   */
+  private static String getResource(int operationType) {
+    switch (operationType) {
+    case SET_SCREEN_BRIGHTNESS :
+      return ResourceExecutor.RESOURCE_BRIGHTNESS;
+    case SET_PHONE_LOUD :
+    case SET_PHONE_SILENT :
+    case SET_PHONE_VIBRATE :
+      return ResourceExecutor.RESOURCE_RINGER;
+    default:
+      return null;
+    }
+  }
+
+  /**
+   * Perform an operation, called on a {@link ResourceExecutor} thread.
+   * 
+   * @param operationType
+   *          the operation to perform
+   * @param intent
+   *          the intent of the action
+   */
+  private void perform(int operationType, Intent intent) {
+    switch (operationType) {
     case SET_SCREEN_BRIGHTNESS :
       setScreenBrightness(intent);
       break;
     case SET_PHONE_LOUD :
-      setPhoneLoud();
+      setPhoneLoud(intent);
       break;
     case SET_PHONE_SILENT :
-      setPhoneSilent();
+      setPhoneSilent(intent);
       break;
     case SET_PHONE_VIBRATE :
-      setPhoneVibrate();
+      setPhoneVibrate(intent);
       break;
     default:
       Log.e("LibreTasks: SettingsActionService", "No such operation supported as: " + operationType);
@@ -105,33 +141,33 @@ public class SettingsActionService extends Service {
   /**
    * set the phone to loud
    */
-  private void setPhoneLoud() {
+  private void setPhoneLoud(Intent intent) {
     AudioManager audioManager =(AudioManager) getSystemService(Context.AUDIO_SERVICE);
     audioManager.setRingerMode(AudioManager.RINGER_MODE_NORMAL);
     int ringstream = AudioManager.STREAM_RING;
     int ringmaxvolume = audioManager.getStreamMaxVolume(ringstream);
     audioManager.setStreamVolume(ringstream, ringmaxvolume, AudioManager.FLAG_SHOW_UI);
-    ResultProcessor.process(this, intent, ResultProcessor.RESULT_SUCCESS,
+    ResourceExecutor.reportResult(this, intent, ResultProcessor.RESULT_SUCCESS,
         getString(R.string.phone_set_loud));
    }
   
   /**
    * set the phone to silent
    */
-  private void setPhoneSilent() {
+  private void setPhoneSilent(Intent intent) {
     AudioManager audioManager =(AudioManager) getSystemService(Context.AUDIO_SERVICE);
     audioManager.setRingerMode(AudioManager.RINGER_MODE_SILENT);
-    ResultProcessor.process(this, intent, ResultProcessor.RESULT_SUCCESS,
+    ResourceExecutor.reportResult(this, intent, ResultProcessor.RESULT_SUCCESS,
         getString(R.string.phone_set_silent));
    }
   
   /**
    * set the phone to vibrate
    */
-  private void setPhoneVibrate() {
+  private void setPhoneVibrate(Intent intent) {
     AudioManager audioManager =(AudioManager) getSystemService(Context.AUDIO_SERVICE);
     audioManager.setRingerMode(AudioManager.RINGER_MODE_VIBRATE);
-    ResultProcessor.process(this, intent, ResultProcessor.RESULT_SUCCESS,
+    ResourceExecutor.reportResult(this, intent, ResultProcessor.RESULT_SUCCESS,
         getString(R.string.phone_set_on_vibrate));
    }
 
@@ -167,7 +203,7 @@ public class SettingsActionService extends Service {
   private void setScreenBrightness(Intent intent) {
     int brightness = intent.getIntExtra(SetScreenBrightnessAction.PARAM_BRIGHTNESS, 200);
     Settings.System.putInt(getContentResolver(), Settings.System.SCREEN_BRIGHTNESS, brightness);
-    ResultProcessor.process(this, intent, ResultProcessor.RESULT_SUCCESS, null);
+    ResourceExecutor.reportResult(this, intent, ResultProcessor.RESULT_SUCCESS, null);
   }
   
 
@@ -44,6 +44,7 @@ import android.util.Log;
 import android.widget.Toast;
 import android.bluetooth.BluetoothAdapter;
 import libretasks.app.R;
+import libretasks.app.controller.ResourceExecutor;
 import libretasks.app.controller.ResultProcessor;
 import libretasks.app.controller.actions.TurnOffWifiAction;
 import libretasks.app.controller.actions.TurnOnWifiAction;
@@ -66,8 +67,6 @@ public class SignalsActionService extends Service {
   public static final int TURN_OFF_WIFI_ACTION = 3;
   public static final int TURN_ON_WIFI_ACTION = 4;
   public static final int POWER_OFF_DEVICE = 5 ;
-  
-  private Intent intent;
 
   @Override
   public IBinder onBind(Intent intent) {
@@ -75,22 +74,55 @@ public class SignalsActionService extends Service {
   }
   
   @Override
-  public void onStart(Intent intent, int startId) {
+  public void onStart(final Intent intent, int startId) {
     super.onStart(intent, startId);
-    this.intent = intent;
-    int operationType = intent.getIntExtra(OPERATION_TYPE, NO_ACTION);
+    final int operationType = intent.getIntExtra(OPERATION_TYPE, NO_ACTION);
+    ResourceExecutor.execute(getResource(operationType), new Runnable() {
+      public void run() {
+        perform(operationType, intent);
+      }
+    });
+  }
+
+  /**
+   * @param operationType
+   *          the operation to perform
+   * @return the resource changed by the operation, or null if it changes no shared resource
+   */
+  private static String getResource(int operationType) {
+    switch (operationType) {
+    case TURN_ON_BLUETOOTH_ACTION :
+    case TURN_OFF_BLUETOOTH_ACTION :
+      return ResourceExecutor.RESOURCE_BLUETOOTH;
+    case TURN_OFF_WIFI_ACTION :
+    case TURN_ON_WIFI_ACTION :
+      return ResourceExecutor.RESOURCE_WIFI;
+    default:
+      return null;
+    }
+  }
+
+  /**
+   * Perform an operation, called on a {@link ResourceExecutor} thread.
+   * 
+   * @param operationType
+   *          the operation to perform
+   * @param intent
+   *          the intent of the action
+   */
+  private void perform(int operationType, Intent intent) {
     switch (operationType) {
     case TURN_ON_BLUETOOTH_ACTION :
-      turnOnBluetooth();
+      turnOnBluetooth(intent);
       break;
     case TURN_OFF_BLUETOOTH_ACTION :
-      turnOffBluetooth();
+      turnOffBluetooth(intent);
       break;
     case TURN_OFF_WIFI_ACTION :
-      turnOffWifi();
+      turnOffWifi(intent);
       break;
     case TURN_ON_WIFI_ACTION :
-      turnOnWifi();
+      turnOnWifi(intent);
       break;
     case POWER_OFF_DEVICE :
         powerOff();
@@ -103,44 +135,44 @@ public class SignalsActionService extends Service {
   /**
    * turn off the wifi.
    */
-  private void turnOffWifi() {
+  private void turnOffWifi(Intent intent) {
     WifiManager wifiManager = (WifiManager) getSystemService(Context.WIFI_SERVICE);
     wifiManager.setWifiEnabled(false);
-    ResultProcessor.process(this, intent, ResultProcessor.RESULT_SUCCESS,
+    ResourceExecutor.reportResult(this, intent, ResultProcessor.RESULT_SUCCESS,
         getString(R.string.wifi_turned_off));
   }
   
   /**
    * turn on the wifi. 
    */
-  private void turnOnWifi() {
+  private void turnOnWifi(Intent intent) {
     WifiManager wifiManager = (WifiManager) getSystemService(Context.WIFI_SERVICE);
     wifiManager.setWifiEnabled(true);
-    ResultProcessor.process(this, intent, ResultProcessor.RESULT_SUCCESS,
+    ResourceExecutor.reportResult(this, intent, ResultProcessor.RESULT_SUCCESS,
         getString(R.string.wifi_turned_on));
   }
   
   /**
    * turn off the bluetooth.
    */
-  private void turnOffBluetooth() {
+  private void turnOffBluetooth(Intent intent) {
     BluetoothAdapter mBluetoothAdapter = BluetoothAdapter.getDefaultAdapter();    
 	if (mBluetoothAdapter.isEnabled()) {
 		mBluetoothAdapter.disable(); 
 	}
-    ResultProcessor.process(this, intent, ResultProcessor.RESULT_SUCCESS,
+    ResourceExecutor.reportResult(this, intent, ResultProcessor.RESULT_SUCCESS,
         getString(R.string.bluetooth_turned_off));
   }
   
   /**
    * turn on the bluetooth. 
    */
-  private void turnOnBluetooth() {
+  private void turnOnBluetooth(Intent intent) {
     BluetoothAdapter mBluetoothAdapter = BluetoothAdapter.getDefaultAdapter();    
 	if (!mBluetoothAdapter.isEnabled()) {
 		mBluetoothAdapter.enable(); 
 	}
-    ResultProcessor.process(this, intent, ResultProcessor.RESULT_SUCCESS,
+    ResourceExecutor.reportResult(this, intent, ResultProcessor.RESULT_SUCCESS,
         getString(R.string.bluetooth_turned_on));
   }
 
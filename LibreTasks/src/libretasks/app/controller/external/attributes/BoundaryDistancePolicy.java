@@ -0,0 +1,70 @@
+/*  
+ * Copyright (c) 2016  LibreTasks - https://github.com/biotinker/LibreTasks  
+ *  
+ *  This file is free software: you may copy, redistribute and/or modify it  
+ *  under the terms of the GNU General Public License as published by the  
+ *  Free Software Foundation, either version 3 of the License, or (at your  
+ *  option) any later version.  
+ *  
+ *  This file is distributed in the hope that it will be useful, but  
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of  
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU  
+ *  General Public License for more details.  
+ *  
+ *  You should have received a copy of the GNU General Public License  
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package libretasks.app.controller.external.attributes;
+
+/**
+ * Samples just often enough that a device moving at up to {@link #MAX_SPEED} cannot cross the
+ * nearest area boundary between two updates. Far from every boundary updates are rare, close to
+ * one they come quickly.
+ * 
+ * <p>
+ * Intervals and distances are rounded down to powers of two of their minimum, so small movements
+ * don't change the request and the provider is only re-registered when the device gets noticeably
+ * closer to or further from a boundary.
+ * </p>
+ */
+public class BoundaryDistancePolicy implements LocationSamplingPolicy {
+
+  /** Fastest travel speed assumed, in meters per second (about 110 km/h) */
+  public static final double MAX_SPEED = 30;
+
+  /** Shortest time between updates, in milliseconds */
+  public static final long MIN_INTERVAL = 30000;
+
+  /** Longest time between updates, in milliseconds */
+  public static final long MAX_INTERVAL = 900000;
+
+  /** Smallest distance between updates, in meters */
+  public static final float MIN_DISTANCE = 10;
+
+  /** Largest distance between updates, in meters */
+  public static final float MAX_DISTANCE = 320;
+
+  public Sampling getSampling(double boundaryDistance) {
+    if (Double.isInfinite(boundaryDistance)) {
+      return new Sampling(MAX_INTERVAL, MAX_DISTANCE);
+    }
+
+    // Time the device needs to reach the boundary at full speed
+    double timeToBoundary = boundaryDistance / MAX_SPEED * 1000;
+    long interval = MIN_INTERVAL;
+    while (interval * 2 <= timeToBoundary && interval * 2 <= MAX_INTERVAL) {
+      interval *= 2;
+    }
+    if (timeToBoundary >= MAX_INTERVAL) {
+      interval = MAX_INTERVAL;
+    }
+
+    // Don't let the provider hold back an update that would reach the boundary
+    float minDistance = MIN_DISTANCE;
+    while (minDistance * 2 <= boundaryDistance / 2 && minDistance * 2 <= MAX_DISTANCE) {
+      minDistance *= 2;
+    }
+
+    return new Sampling(interval, minDistance);
+  }
+}
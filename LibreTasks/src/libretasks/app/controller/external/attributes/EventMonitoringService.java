@@ -36,6 +36,7 @@ package libretasks.app.controller.external.attributes;
 import libretasks.app.R;
 import libretasks.app.controller.util.Logger;
 import libretasks.app.model.CoreRulesDbHelper;
+import libretasks.app.model.FailedActionsDbHelper;
 import android.app.Service;
 import android.content.ComponentName;
 import android.content.Context;
@@ -46,6 +47,8 @@ import android.widget.Toast;
 
 /**
  * The service creates monitors for System Events, and could later support third party applications.
+ * Only the monitors needed by the enabled rules are running, they are started, stopped or restarted
+ * whenever {@link #refresh(Context)} reports a change.
  */
 public class EventMonitoringService extends Service {
   // Log tag
@@ -62,6 +65,9 @@ public class EventMonitoringService extends Service {
       new NetworkStateMonitor(this)
   };
 
+  /** Whether each of the {@link #MONITORS} is running */
+  private final boolean running[] = new boolean[MONITORS.length];
+
   // Keep track if already running or not
   private static boolean isAlreadyRunning = false;
 
@@ -92,6 +98,19 @@ public class EventMonitoringService extends Service {
     }
   }
 
+  /**
+   * Have the monitors re-evaluated against the current rules and settings. Must be called whenever
+   * a rule is changed. Does nothing if the service is not running.
+   * 
+   * @param context
+   *          the context to reach the service with
+   */
+  public static void refresh(Context context) {
+    if (isAlreadyRunning) {
+      context.startService(new Intent(context, EventMonitoringService.class));
+    }
+  }
+
   public static void stopService(Context context) {
     if (context.stopService(new Intent(context, EventMonitoringService.class))) {
       Logger.w(TAG, "EventMonitoringService stopped");
@@ -99,8 +118,8 @@ public class EventMonitoringService extends Service {
   }
 
   /**
-   * Actions performed on service initialization. EventMonitoringService performs initialization of
-   * each SystemServiceMonitor.
+   * Actions performed on service initialization. The monitors are started by
+   * {@link #onStart(Intent, int)}, which follows.
    */
   @Override
   public void onCreate() {
@@ -116,16 +135,53 @@ public class EventMonitoringService extends Service {
     // TODO(acase): Move this to OmnidroidManager or BCReceiver
     // Let the user know we're activating rules
     alertUserOnStartStop(true);
+  }
+
+  /**
+   * Start the monitors that are needed and stop the ones that are not. Called when the service is
+   * started and for every {@link #refresh(Context)}.
+   * 
+   * @see android.app.Service#onStart(Intent, int)
+   */
+  @Override
+  public void onStart(Intent intent, int startId) {
+    FailedActionsDbHelper failedActionsDbHelper = new FailedActionsDbHelper(this);
+    boolean retriesPending = failedActionsDbHelper.hasActions();
+    failedActionsDbHelper.close();
 
-    // Start System Monitors
-    for (SystemServiceEventMonitor monitor : MONITORS) {
-      try {
-        monitor.init();
-        Logger.w(TAG, monitor.getMonitorName() + ": Start\n");
-      } catch (Exception e) {
-        Logger.e(TAG, monitor.getMonitorName() + " did not start.\nThe following error occurred: "
-            + e + e.getMessage() + e.getStackTrace());
+    for (int i = 0; i < MONITORS.length; i++) {
+      SystemServiceEventMonitor monitor = MONITORS[i];
+      boolean needed = monitor.isNeeded(retriesPending);
+      if (running[i] && (!needed || monitor.isConfigurationChanged())) {
+        stopMonitor(i);
       }
+      if (!running[i] && needed) {
+        startMonitor(i);
+      }
+    }
+  }
+
+  private void startMonitor(int i) {
+    SystemServiceEventMonitor monitor = MONITORS[i];
+    try {
+      monitor.init();
+      running[i] = true;
+      Logger.w(TAG, monitor.getMonitorName() + ": Start\n");
+    } catch (Exception e) {
+      Logger.e(TAG, monitor.getMonitorName() + " did not start.\nThe following error occurred: "
+          + e + e.getMessage() + e.getStackTrace());
+    }
+  }
+
+  private void stopMonitor(int i) {
+    SystemServiceEventMonitor monitor = MONITORS[i];
+    running[i] = false;
+    try {
+      monitor.stop();
+      Logger.w(TAG, monitor.getMonitorName() + " stopped");
+    } catch (Exception e) {
+      Logger.e(TAG, monitor.getMonitorName() + " did not stop.\nThe following error occurred: "
+          + e + e.getMessage() + e.getStackTrace());
     }
   }
 
@@ -135,13 +191,9 @@ public class EventMonitoringService extends Service {
    */
   @Override
   public void onDestroy() {
-    for (SystemServiceEventMonitor monitor : MONITORS) {
-      try {
-        monitor.stop();
-        Logger.w(TAG, monitor.getMonitorName() + " stopped");
-      } catch (Exception e) {
-        Logger.e(TAG, monitor.getMonitorName() + " did not stop.\nThe following error occurred: "
-            + e + e.getMessage() + e.getStackTrace());
+    for (int i = 0; i < MONITORS.length; i++) {
+      if (running[i]) {
+        stopMonitor(i);
       }
     }
     isAlreadyRunning = false;
@@ -0,0 +1,116 @@
+/*  
+ * Copyright (c) 2016  LibreTasks - https://github.com/biotinker/LibreTasks  
+ *  
+ *  This file is free software: you may copy, redistribute and/or modify it  
+ *  under the terms of the GNU General Public License as published by the  
+ *  Free Software Foundation, either version 3 of the License, or (at your  
+ *  option) any later version.  
+ *  
+ *  This file is distributed in the hope that it will be useful, but  
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of  
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU  
+ *  General Public License for more details.  
+ *  
+ *  You should have received a copy of the GNU General Public License  
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package libretasks.app.controller.external.attributes;
+
+import android.location.Location;
+import libretasks.app.controller.datatypes.OmniArea;
+import libretasks.app.controller.util.DataTypeValidationException;
+
+/**
+ * Process wide cache of the last known location. {@link LocationMonitor} keeps it up to date while
+ * it is running, so the event engine can read the current location without calling into the
+ * location service for every event.
+ */
+public class LocationCache {
+
+  /** An immutable location fix with its attribute string formatted once. */
+  public static class Fix {
+    private final OmniArea area;
+    private final String text;
+    private final long time;
+    private final float accuracy;
+
+    private Fix(OmniArea area, long time, float accuracy) {
+      this.area = area;
+      this.text = area.toString();
+      this.time = time;
+      this.accuracy = accuracy;
+    }
+
+    public OmniArea getArea() {
+      return area;
+    }
+
+    /**
+     * @return the location formatted as an {@link OmniArea} attribute string
+     */
+    public String getText() {
+      return text;
+    }
+
+    /**
+     * @return UTC time of this fix, in milliseconds since January 1, 1970
+     */
+    public long getTime() {
+      return time;
+    }
+
+    /**
+     * @return accuracy of this fix in meters
+     */
+    public float getAccuracy() {
+      return accuracy;
+    }
+  }
+
+  private static volatile Fix lastFix;
+
+  /** Whether the location monitor is running and keeping this cache current */
+  private static volatile boolean monitored = false;
+
+  /**
+   * This is a static utility class which cannot be instantiated.
+   */
+  private LocationCache() {
+  }
+
+  /**
+   * Replace the cached location.
+   * 
+   * @param location
+   *          the new location fix, must not be null
+   * @return the cached fix
+   * @throws DataTypeValidationException
+   *           if the location cannot be represented as an {@link OmniArea}
+   */
+  public static Fix update(Location location) throws DataTypeValidationException {
+    // OmniArea takes the longitude first and its radius in miles
+    OmniArea area = new OmniArea(null, location.getLongitude(), location.getLatitude(), location
+        .getAccuracy() * OmniArea.MILES_IN_A_METER);
+    Fix fix = new Fix(area, location.getTime(), location.getAccuracy());
+    lastFix = fix;
+    return fix;
+  }
+
+  /**
+   * @return the last known location, or null if there is none yet
+   */
+  public static Fix getLastFix() {
+    return lastFix;
+  }
+
+  /**
+   * @return true if the location monitor is keeping this cache current
+   */
+  public static boolean isMonitored() {
+    return monitored;
+  }
+
+  static void setMonitored(boolean monitored) {
+    LocationCache.monitored = monitored;
+  }
+}
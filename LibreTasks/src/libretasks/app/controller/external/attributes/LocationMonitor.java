@@ -33,20 +33,22 @@
  *******************************************************************************/
 package libretasks.app.controller.external.attributes;
 
+import java.util.ArrayList;
+
 import android.content.Context;
 import android.content.Intent;
-import android.content.SharedPreferences;
 import android.location.Location;
 import android.location.LocationListener;
 import android.location.LocationManager;
 import android.os.Bundle;
 import android.util.Log;
-import libretasks.app.R;
+import libretasks.app.controller.EngineConfig;
 import libretasks.app.controller.Event;
+import libretasks.app.controller.EventFilter;
 import libretasks.app.controller.datatypes.OmniArea;
 import libretasks.app.controller.events.LocationChangedEvent;
 import libretasks.app.controller.util.DataTypeValidationException;
-import libretasks.app.view.simple.UIDbHelperStore;
+import libretasks.app.model.CoreRulesDbHelper;
 
 /**
  * The class is responsible for communication with the Location Service. It provides access to
@@ -55,63 +57,98 @@ import libretasks.app.view.simple.UIDbHelperStore;
 public class LocationMonitor implements SystemServiceEventMonitor {
   private static final String SYSTEM_SERVICE_NAME = "LOCATION_SERVICE";
   private static final String MONITOR_NAME = "LocationMonitor";
-  private static OmniArea lastLocation;
-  /** Minimum frequency in updates(in milliseconds). Default value is 300000 (5 minutes). */
-  private static final long MIN_PROVIDER_UPDATE_INTERVAL = 300000;
-  /** Minimum change in location(in meters). Default value is 50 meters. */
-  private static final float MIN_PROVIDER_UPDATE_DISTANCE = 50;
+  /** Longest time a new location is held back as a duplicate, in milliseconds (30 minutes) */
+  private static final long MAX_STALENESS = 1800000;
+
+  /** The last location broadcast as changed */
+  private static LocationCache.Fix lastLocation;
 
   private Context context;
+
+  /** The location provider the monitor was started with */
+  private String provider;
+
+  /** Decides how often updates are requested */
+  private LocationSamplingPolicy samplingPolicy = new BoundaryDistancePolicy();
+
+  /** The areas used by the rules, loaded when the monitor is started */
+  private ArrayList<OmniArea> geofences = new ArrayList<OmniArea>();
+
+  /** The sampling currently requested from the provider */
+  private LocationSamplingPolicy.Sampling sampling;
   
   public LocationMonitor(Context context) {
     this.context = context;
   }
   
+  /**
+   * Replace the policy deciding how often updates are requested. Takes effect the next time the
+   * monitor is started.
+   * 
+   * @param samplingPolicy
+   *          the new policy
+   */
+  public void setSamplingPolicy(LocationSamplingPolicy samplingPolicy) {
+    this.samplingPolicy = samplingPolicy;
+  }
+
   public void init() {
     lastLocation = null;
+    sampling = null;
     LocationManager lm = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
     if (lm == null) {
       Log.i("LocationService", "Could not obtain LOCATION_SERVICE from the system.");
       return;
     }
     
-    SharedPreferences prefs = UIDbHelperStore.instance().db().getSharedPreferences();
-    String provider = null;
-    if (prefs.getBoolean(context.getString(R.string.pref_key_passive), false))
-    	provider = LocationManager.PASSIVE_PROVIDER;
-    else
-    	provider = prefs.getString(context.getString(R.string.pref_key_provider), null);
+    provider = EngineConfig.get(context).getLocationProvider();
     if (provider == null) {
         Log.i("LocationService", "No location provider set.");
         return;
     }
     
-    lm.requestLocationUpdates(provider, MIN_PROVIDER_UPDATE_INTERVAL, MIN_PROVIDER_UPDATE_DISTANCE,
-        locationListener);
+    geofences = loadGeofences();
+
+    // Seed the location cache until the first update arrives
+    LocationCache.Fix fix = null;
+    Location lastKnown = lm.getLastKnownLocation(provider);
+    if (lastKnown != null) {
+      try {
+        fix = LocationCache.update(lastKnown);
+      } catch (DataTypeValidationException e) {
+        Log.i("LocationService", "Ignoring invalid last known location.");
+      }
+    }
+    adjustSampling(lm, fix);
+    LocationCache.setMonitored(true);
   }
 
   public void stop() {
+    LocationCache.setMonitored(false);
     LocationManager lm = (LocationManager) context.getSystemService(Context.LOCATION_SERVICE);
     lm.removeUpdates(locationListener);
   }
 
   private final LocationListener locationListener = new LocationListener() {
     public void onLocationChanged(Location location) {
-      OmniArea newLocation;
+      LocationCache.Fix fix;
       try {
-        newLocation = new OmniArea(null, location.getLatitude(), location.getLongitude(), location
-            .getAccuracy());
+        fix = LocationCache.update(location);
+        adjustSampling((LocationManager) context.getSystemService(Context.LOCATION_SERVICE), fix);
       } catch (DataTypeValidationException e) {
-        newLocation = null;
+        fix = null;
 
       }
 
-      if (newLocation != null && lastLocation != newLocation) {
+      if (fix != null && isChanged(fix)) {
+        lastLocation = fix;
+
         // Create intent
         Intent intent = new Intent(LocationChangedEvent.ACTION_NAME);
-        String temp = newLocation.toString();
-        intent.putExtra(Event.ATTRIBUTE_LOCATION, temp);
-        context.sendBroadcast(intent);
+        intent.putExtra(Event.ATTRIBUTE_LOCATION, fix.getText());
+        if (EventFilter.accept(context, intent)) {
+          context.sendBroadcast(intent);
+        }
       }
     }
 
@@ -136,11 +173,112 @@ public class LocationMonitor implements SystemServiceEventMonitor {
    *           throws an exception if attribute is unavailable.
    */
   public OmniArea getAttributeValue() throws ExternalAttributeAccessException {
-    if (lastLocation == null) {
+    LocationCache.Fix fix = LocationCache.getLastFix();
+    if (fix == null) {
       Log.i("LocationService", "Could not obtain Current Location from the system.");
       throw new ExternalAttributeAccessException("Location Service is not available.");
     }
-    return lastLocation;
+    return fix.getArea();
+  }
+
+  public boolean isNeeded(boolean retriesPending) {
+    return EventFilter.hasEnabledRules(context, LocationChangedEvent.APPLICATION_NAME,
+        LocationChangedEvent.EVENT_NAME);
+  }
+
+  public boolean isConfigurationChanged() {
+    String current = EngineConfig.get(context).getLocationProvider();
+    if ((provider == null) ? current != null : !provider.equals(current)) {
+      return true;
+    }
+    return !geofences.equals(loadGeofences());
+  }
+
+  /**
+   * Check whether a fix is far enough from the last location broadcast to be reported as a change.
+   * Fixes closer than the configured distance, or within the accuracy of the last location, are
+   * duplicates unless they move in or out of a rule area, or the last location is older than
+   * {@link #MAX_STALENESS}.
+   * 
+   * @param fix
+   *          the new location
+   * @return true if the location should be broadcast
+   */
+  private boolean isChanged(LocationCache.Fix fix) {
+    LocationCache.Fix last = lastLocation;
+    if (last == null || fix.getTime() - last.getTime() >= MAX_STALENESS) {
+      return true;
+    }
+
+    for (OmniArea area : geofences) {
+      if (fix.getArea().matchFilter(OmniArea.Filter.NEAR, area) != last.getArea().matchFilter(
+          OmniArea.Filter.NEAR, area)) {
+        return true;
+      }
+    }
+
+    double threshold = Math.max(EngineConfig.get(context).getLocationChangeDistance(), last
+        .getAccuracy());
+    double distance = OmniArea.getDistance(last.getArea(), fix.getArea())
+        / OmniArea.MILES_IN_A_METER;
+    return distance > threshold;
+  }
+
+  /**
+   * @return the areas used by the near and away filters of the enabled rules
+   */
+  private ArrayList<OmniArea> loadGeofences() {
+    CoreRulesDbHelper coreRulesDbHelper = new CoreRulesDbHelper(context);
+    ArrayList<OmniArea> areas = coreRulesDbHelper.getGeofences();
+    coreRulesDbHelper.close();
+    return areas;
+  }
+
+  /**
+   * Request updates as often as the distance from a fix to the nearest area boundary calls for,
+   * re-registering with the provider only if the sampling changes.
+   * 
+   * @param lm
+   *          the location manager
+   * @param fix
+   *          the current location, or null if it is not known
+   */
+  private void adjustSampling(LocationManager lm, LocationCache.Fix fix) {
+    LocationSamplingPolicy.Sampling newSampling = samplingPolicy
+        .getSampling(getBoundaryDistance(fix));
+    if (newSampling.equals(sampling)) {
+      return;
+    }
+    sampling = newSampling;
+    lm.requestLocationUpdates(provider, sampling.getInterval(), sampling.getMinDistance(),
+        locationListener);
+  }
+
+  /**
+   * Get the distance from a fix to the nearest point where a near filter changes to away or back.
+   * That is where the distance between the centers equals the sum of both radii, as in
+   * {@link OmniArea#matchFilter(OmniArea.Filter, OmniArea)}.
+   * 
+   * @param fix
+   *          the current location, or null if it is not known
+   * @return the distance in meters, 0 if the location is not known and
+   *         {@link Double#POSITIVE_INFINITY} if there are no areas
+   */
+  private double getBoundaryDistance(LocationCache.Fix fix) {
+    if (geofences.isEmpty()) {
+      return Double.POSITIVE_INFINITY;
+    } else if (fix == null) {
+      return 0;
+    }
+
+    OmniArea location = fix.getArea();
+    double nearest = Double.POSITIVE_INFINITY;
+    for (OmniArea area : geofences) {
+      double radius = area.getProximityDistance() + location.getProximityDistance();
+      double distance = Math.abs(OmniArea.getDistance(location, area) - radius);
+      nearest = Math.min(nearest, distance);
+    }
+    return nearest / OmniArea.MILES_IN_A_METER;
   }
 
   public String getMonitorName() {
@@ -0,0 +1,85 @@
+/*  
+ * Copyright (c) 2016  LibreTasks - https://github.com/biotinker/LibreTasks  
+ *  
+ *  This file is free software: you may copy, redistribute and/or modify it  
+ *  under the terms of the GNU General Public License as published by the  
+ *  Free Software Foundation, either version 3 of the License, or (at your  
+ *  option) any later version.  
+ *  
+ *  This file is distributed in the hope that it will be useful, but  
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of  
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU  
+ *  General Public License for more details.  
+ *  
+ *  You should have received a copy of the GNU General Public License  
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package libretasks.app.controller.external.attributes;
+
+/**
+ * Decides how often {@link LocationMonitor} asks the location provider for updates, given how far
+ * the device is from the nearest boundary of an area used by the rules.
+ */
+public interface LocationSamplingPolicy {
+
+  /** Parameters of a location update request. */
+  public static final class Sampling {
+    private final long interval;
+    private final float minDistance;
+
+    /**
+     * @param interval
+     *          minimum time between updates, in milliseconds
+     * @param minDistance
+     *          minimum distance between updates, in meters
+     */
+    public Sampling(long interval, float minDistance) {
+      this.interval = interval;
+      this.minDistance = minDistance;
+    }
+
+    /**
+     * @return minimum time between updates, in milliseconds
+     */
+    public long getInterval() {
+      return interval;
+    }
+
+    /**
+     * @return minimum distance between updates, in meters
+     */
+    public float getMinDistance() {
+      return minDistance;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Sampling)) {
+        return false;
+      }
+      Sampling other = (Sampling) o;
+      return interval == other.interval && minDistance == other.minDistance;
+    }
+
+    @Override
+    public int hashCode() {
+      return (int) (interval ^ (interval >>> 32)) * 31 + Float.floatToIntBits(minDistance);
+    }
+
+    @Override
+    public String toString() {
+      return interval + " ms, " + minDistance + " m";
+    }
+  }
+
+  /**
+   * Get the sampling for a device at some distance from the nearest area boundary. Must only depend
+   * on the distance, so the same movement always produces the same requests.
+   * 
+   * @param boundaryDistance
+   *          distance to the nearest boundary in meters, {@link Double#POSITIVE_INFINITY} if the
+   *          rules use no areas
+   * @return the sampling to request
+   */
+  public Sampling getSampling(double boundaryDistance);
+}
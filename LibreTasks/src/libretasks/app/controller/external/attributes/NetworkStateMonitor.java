@@ -41,6 +41,7 @@ import android.net.ConnectivityManager;
 import android.net.wifi.WifiManager;
 import android.telephony.PhoneStateListener;
 import android.telephony.TelephonyManager;
+import libretasks.app.controller.EventFilter;
 import libretasks.app.controller.events.InternetAvailableEvent;
 import libretasks.app.controller.util.Logger;
 
@@ -70,7 +71,9 @@ public class NetworkStateMonitor extends BroadcastReceiver implements SystemServ
           .isConnected();
       if (!dataConnected && wifiConnected) {
         Intent newIntent = new Intent(InternetAvailableEvent.ACTION_NAME);
-        context.sendBroadcast(newIntent);
+        if (EventFilter.accept(context, newIntent)) {
+          context.sendBroadcast(newIntent);
+        }
         Logger.i(TAG, "wifi connected");
       }
     }
@@ -84,6 +87,18 @@ public class NetworkStateMonitor extends BroadcastReceiver implements SystemServ
     return MONITOR_NAME;
   }
 
+  /**
+   * The connection state is also read by actions (see {@link #isConnected()}), so the monitor runs
+   * while any rule is enabled, not only for Internet Available rules.
+   */
+  public boolean isNeeded(boolean retriesPending) {
+    return retriesPending || EventFilter.hasEnabledRules(context);
+  }
+
+  public boolean isConfigurationChanged() {
+    return false;
+  }
+
   public String getSystemServiceName() {
     return SYSTEM_SERVICE_NAME;
   }
@@ -101,7 +116,9 @@ public class NetworkStateMonitor extends BroadcastReceiver implements SystemServ
       if (state == TelephonyManager.DATA_CONNECTED) {
         if (!wifiConnected) {
           Intent intent = new Intent(InternetAvailableEvent.ACTION_NAME);
-          context.sendBroadcast(intent);
+          if (EventFilter.accept(context, intent)) {
+            context.sendBroadcast(intent);
+          }
         }
         // If phone was using wifi then it's not a new InternetAvailable event
         dataConnected = true;
@@ -33,6 +33,7 @@
  *******************************************************************************/
 package libretasks.app.controller.external.attributes;
 
+import libretasks.app.controller.EventFilter;
 import libretasks.app.controller.events.MissedCallEvent;
 import libretasks.app.controller.events.PhoneRingingEvent;
 import libretasks.app.controller.events.CallEndedEvent;
@@ -94,6 +95,7 @@ public class PhoneStateMonitor implements SystemServiceEventMonitor {
   public void stop() {
     TelephonyManager tm = (TelephonyManager) context.getSystemService(Context.TELEPHONY_SERVICE);
     tm.listen(phoneStateListener, PhoneStateListener.LISTEN_NONE);
+    tm.listen(phoneStateListener1, PhoneStateListener.LISTEN_NONE);
   }
 
   private final PhoneStateListener phoneStateListener = new PhoneStateListener() {
@@ -124,7 +126,9 @@ public class PhoneStateMonitor implements SystemServiceEventMonitor {
         if (state == TelephonyManager.CALL_STATE_RINGING) {
           Intent intent = new Intent(PhoneRingingEvent.ACTION_NAME);
           intent.putExtra(PhoneRingingEvent.ATTRIBUTE_PHONE_NUMBER, incomingNumber);
-          context.sendBroadcast(intent);
+          if (EventFilter.accept(context, intent)) {
+            context.sendBroadcast(intent);
+          }
           
           phoneNumber = incomingNumber;
           Log.d(MONITOR_NAME, "RINGING");
@@ -140,13 +144,17 @@ public class PhoneStateMonitor implements SystemServiceEventMonitor {
              */
             Log.d(MONITOR_NAME, "inbound? " + phoneStateMachine.isInboundOffhook());
             Intent intent = new Intent(CallEndedEvent.ACTION_NAME);
-            context.sendBroadcast(intent);
+            if (EventFilter.accept(context, intent)) {
+              context.sendBroadcast(intent);
+            }
            } else if (phoneStateMachine.isRinging()) {
              Intent intent = new Intent(MissedCallEvent.ACTION_NAME);
              if (phoneNumber != null) {
                intent.putExtra(MissedCallEvent.ATTRIBUTE_PHONE_NUMBER, phoneNumber);
              }
-             context.sendBroadcast(intent);             
+             if (EventFilter.accept(context, intent)) {
+               context.sendBroadcast(intent);
+             }
            }
 
           Log.d(MONITOR_NAME, "IDLE");
@@ -166,7 +174,9 @@ public class PhoneStateMonitor implements SystemServiceEventMonitor {
     public void onServiceStateChanged(ServiceState serviceState){      
       if (serviceState.getState() == ServiceState.STATE_IN_SERVICE ) {
         Intent intent = new Intent(ServiceAvailableEvent.ACTION_NAME);
-        context.sendBroadcast(intent);
+        if (EventFilter.accept(context, intent)) {
+          context.sendBroadcast(intent);
+        }
         serviceAvailable = true;
       } else {
         serviceAvailable = false;
@@ -178,6 +188,18 @@ public class PhoneStateMonitor implements SystemServiceEventMonitor {
     return MONITOR_NAME;
   }
 
+  /**
+   * The service state is also read by actions (see {@link #isServiceAvailable()}), so the monitor
+   * runs while any rule is enabled, not only for phone call rules.
+   */
+  public boolean isNeeded(boolean retriesPending) {
+    return retriesPending || EventFilter.hasEnabledRules(context);
+  }
+
+  public boolean isConfigurationChanged() {
+    return false;
+  }
+
   public String getSystemServiceName() {
     return SYSTEM_SERVICE_NAME;
   }
@@ -44,6 +44,18 @@ public interface SystemServiceEventMonitor {
   /** Actions performed to finalize EventMonitor service. */
   public void stop();
 
+  /**
+   * Whether the monitor has to run for the current rules.
+   * 
+   * @param retriesPending
+   *          whether failed actions are waiting for a retry
+   * @return true if the monitor should be started, false if it should be stopped
+   */
+  public boolean isNeeded(boolean retriesPending);
+
+  /** Whether the settings the running monitor was started with have changed since. */
+  public boolean isConfigurationChanged();
+
   /** EventMonitor service name */
   public String getMonitorName();
 }
@@ -38,6 +38,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.util.Log;
+import libretasks.app.controller.EventFilter;
 import libretasks.app.controller.events.TimeTickEvent;
 
 /**
@@ -72,6 +73,19 @@ public class TimeMonitor extends BroadcastReceiver implements SystemServiceEvent
     return MONITOR_NAME;
   }
 
+  /**
+   * Time ticks are needed by time rules and to wake up failed action retries.
+   */
+  public boolean isNeeded(boolean retriesPending) {
+    return retriesPending
+        || EventFilter.hasEnabledRules(context, TimeTickEvent.APPLICATION_NAME,
+            TimeTickEvent.EVENT_NAME);
+  }
+
+  public boolean isConfigurationChanged() {
+    return false;
+  }
+
   public String getSystemServiceName() {
     return SYSTEM_SERVICE_NAME;
   }
@@ -80,6 +94,8 @@ public class TimeMonitor extends BroadcastReceiver implements SystemServiceEvent
   public void onReceive(Context arg0, Intent arg1) {
     Log.d("TimeMonitor", "Intent received");
     Intent intent = new Intent(TimeTickEvent.ACTION_NAME);
-    context.sendBroadcast(intent);    
+    if (EventFilter.accept(context, intent)) {
+      context.sendBroadcast(intent);
+    }
   }
 }
@@ -0,0 +1,119 @@
+/*  
+ * Copyright (c) 2016  LibreTasks - https://github.com/biotinker/LibreTasks  
+ *  
+ *  This file is free software: you may copy, redistribute and/or modify it  
+ *  under the terms of the GNU General Public License as published by the  
+ *  Free Software Foundation, either version 3 of the License, or (at your  
+ *  option) any later version.  
+ *  
+ *  This file is distributed in the hope that it will be useful, but  
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of  
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU  
+ *  General Public License for more details.  
+ *  
+ *  You should have received a copy of the GNU General Public License  
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package libretasks.app.controller.util;
+
+import java.util.List;
+
+/**
+ * Counts occurrences over a sliding time window. Timestamps are kept in a ring buffer that grows
+ * when full; expired timestamps are dropped from the head whenever the counter is used, so adding
+ * and counting take amortized constant time and no I/O.
+ */
+public class SlidingWindowCounter {
+
+  /** Initial number of timestamps the ring buffer can hold. */
+  private static final int INITIAL_CAPACITY = 16;
+
+  /** Length of the window in milliseconds. */
+  private final long window;
+
+  /** Ring buffer of timestamps in the order they were added. */
+  private long[] timestamps = new long[INITIAL_CAPACITY];
+
+  /** Index of the oldest timestamp. */
+  private int head = 0;
+
+  /** Number of timestamps currently held. */
+  private int size = 0;
+
+  /**
+   * @param window
+   *          length of the window in milliseconds
+   */
+  public SlidingWindowCounter(long window) {
+    if (window <= 0) {
+      throw new IllegalArgumentException("window must be positive");
+    }
+    this.window = window;
+  }
+
+  /**
+   * Record an occurrence. Timestamps are expected in non-decreasing order.
+   * 
+   * @param timestamp
+   *          time of the occurrence in milliseconds
+   */
+  public synchronized void add(long timestamp) {
+    expire(timestamp);
+    if (size == timestamps.length) {
+      grow();
+    }
+    timestamps[(head + size) % timestamps.length] = timestamp;
+    size++;
+  }
+
+  /**
+   * Record occurrences that happened before all the ones added so far, e.g. when the counter is
+   * seeded after it has already been in use.
+   * 
+   * @param earlier
+   *          times of the occurrences in milliseconds, in non-decreasing order
+   */
+  public synchronized void addEarlier(List<Long> earlier) {
+    for (int i = earlier.size() - 1; i >= 0; i--) {
+      if (size == timestamps.length) {
+        grow();
+      }
+      head = (head + timestamps.length - 1) % timestamps.length;
+      timestamps[head] = earlier.get(i);
+      size++;
+    }
+  }
+
+  /**
+   * @param now
+   *          the current time in milliseconds
+   * @return the number of occurrences within the window ending at {@code now}
+   */
+  public synchronized int count(long now) {
+    expire(now);
+    return size;
+  }
+
+  /**
+   * Drop all timestamps at or before {@code now - window}.
+   */
+  private void expire(long now) {
+    long windowStart = now - window;
+    while (size > 0 && timestamps[head] <= windowStart) {
+      head = (head + 1) % timestamps.length;
+      size--;
+    }
+  }
+
+  /**
+   * Double the capacity of the ring buffer, moving the oldest timestamp to index 0.
+   */
+  private void grow() {
+    long[] grown = new long[timestamps.length * 2];
+    for (int i = 0; i < size; i++) {
+      grown[i] = timestamps[(head + i) % timestamps.length];
+    }
+    timestamps = grown;
+    head = 0;
+  }
+}
@@ -49,6 +49,9 @@ public class ActionLog extends Log {
   private String actionName;
   private String parameters;
 
+  /** The log of the causing event, used to resolve logEventID once that log has been written */
+  private EventLog logEvent;
+
   /**
    * @param context
    *          application context for the db connection
@@ -67,10 +70,37 @@ public class ActionLog extends Log {
     this.text = action.getDescription();
   }
 
+  /**
+   * @param action
+   *          the Action to create a {@code Log} out of
+   * @param logEvent
+   *          the {@code EventLog} of the event that caused this action, which may not have been
+   *          written to the DB yet.
+   * 
+   */
+  public ActionLog(Action action, EventLog logEvent) {
+    this(action, (Long) null);
+    this.logEvent = logEvent;
+  }
+
+  /**
+   * @param action
+   *          the Action to create a {@code Log} out of
+   * @param logEvent
+   *          the {@code EventLog} of the event that caused this action
+   * @param note
+   *          why the action was not executed on its own, appended to the description
+   */
+  public ActionLog(Action action, EventLog logEvent, String note) {
+    this(action, logEvent);
+    this.text = text + " (" + note + ")";
+  }
+
   public ActionLog(ActionLog log) {
     super(log);
     this.ruleName = log.ruleName;
     this.logEventID = log.logEventID;
+    this.logEvent = log.logEvent;
     this.appName = log.appName;
     this.actionName = log.actionName;
     this.parameters = log.parameters;
@@ -111,6 +141,9 @@ public class ActionLog extends Log {
   }
 
   public Long getLogEventID() {
+    if (logEventID == null && logEvent != null) {
+      return logEvent.id;
+    }
     return logEventID;
   }
 
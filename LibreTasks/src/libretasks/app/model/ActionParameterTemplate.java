@@ -0,0 +1,178 @@
+/*  
+ * Copyright (c) 2016  LibreTasks - https://github.com/biotinker/LibreTasks  
+ *  
+ *  This file is free software: you may copy, redistribute and/or modify it  
+ *  under the terms of the GNU General Public License as published by the  
+ *  Free Software Foundation, either version 3 of the License, or (at your  
+ *  option) any later version.  
+ *  
+ *  This file is distributed in the hope that it will be useful, but  
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of  
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU  
+ *  General Public License for more details.  
+ *  
+ *  You should have received a copy of the GNU General Public License  
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package libretasks.app.model;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Set;
+
+import libretasks.app.controller.Event;
+
+/**
+ * A rule action parameter split into literal text and {@code <attribute>} tags. Parameters are
+ * compiled once and cached by their text, so filling in the event attributes when a rule fires
+ * does not need to scan the parameter again.
+ */
+public final class ActionParameterTemplate {
+  /** Compiled templates by parameter text */
+  private static final HashMap<String, ActionParameterTemplate> cache =
+      new HashMap<String, ActionParameterTemplate>();
+
+  /** The parameter text */
+  private final String source;
+
+  /** Segments of the parameter, either literal text or an attribute name */
+  private final String[] segments;
+
+  /** Whether each segment is an attribute name */
+  private final boolean[] isAttribute;
+
+  /** Length of the literal text of the parameter */
+  private final int literalLength;
+
+  private ActionParameterTemplate(String source, String[] segments, boolean[] isAttribute,
+      int literalLength) {
+    this.source = source;
+    this.segments = segments;
+    this.isAttribute = isAttribute;
+    this.literalLength = literalLength;
+  }
+
+  /**
+   * Get the compiled template of a parameter, compiling it if it has not been seen before.
+   * 
+   * @param paramData
+   *          the parameter data
+   * @return the compiled template
+   */
+  public static synchronized ActionParameterTemplate get(String paramData) {
+    ActionParameterTemplate template = cache.get(paramData);
+    if (template == null) {
+      template = compile(paramData);
+      cache.put(paramData, template);
+    }
+    return template;
+  }
+
+  /**
+   * Drop all compiled templates. Should be called when rules are changed so that templates of
+   * parameters that no longer exist are released.
+   */
+  public static synchronized void invalidate() {
+    cache.clear();
+  }
+
+  /**
+   * Split a parameter into segments. A tag is the text between a '<' and the next '>', scanning
+   * stops at the first '<' that is not followed by a non-empty tag.
+   * 
+   * @param paramData
+   *          the parameter data
+   * @return the compiled template
+   */
+  static ActionParameterTemplate compile(String paramData) {
+    ArrayList<String> segments = new ArrayList<String>();
+    ArrayList<Boolean> isAttribute = new ArrayList<Boolean>();
+    int literalLength = 0;
+
+    int cursor = 0;
+    while (cursor < paramData.length()) {
+      int openBracketIdx = paramData.indexOf('<', cursor);
+      int closeBracketIdx = paramData.indexOf('>', cursor);
+
+      if (openBracketIdx == -1 || closeBracketIdx == -1 || openBracketIdx + 1 >= closeBracketIdx) {
+        segments.add(paramData.substring(cursor));
+        isAttribute.add(false);
+        literalLength += paramData.length() - cursor;
+        break;
+      }
+
+      if (openBracketIdx > cursor) {
+        segments.add(paramData.substring(cursor, openBracketIdx));
+        isAttribute.add(false);
+        literalLength += openBracketIdx - cursor;
+      }
+      segments.add(paramData.substring(openBracketIdx + 1, closeBracketIdx));
+      isAttribute.add(true);
+
+      cursor = closeBracketIdx + 1;
+    }
+
+    boolean[] attributeFlags = new boolean[isAttribute.size()];
+    for (int i = 0; i < attributeFlags.length; i++) {
+      attributeFlags[i] = isAttribute.get(i);
+    }
+    return new ActionParameterTemplate(paramData, segments.toArray(new String[segments.size()]),
+        attributeFlags, literalLength);
+  }
+
+  /**
+   * @return whether the parameter contains any attribute tags
+   */
+  public boolean hasAttributes() {
+    return literalLength < source.length();
+  }
+
+  /**
+   * Add the names of the attribute tags of this parameter to a set.
+   * 
+   * @param attributes
+   *          the set to add the attribute names to
+   */
+  public void addAttributes(Set<String> attributes) {
+    for (int i = 0; i < segments.length; i++) {
+      if (isAttribute[i]) {
+        attributes.add(segments[i]);
+      }
+    }
+  }
+
+  /**
+   * Fill the attribute tags of this parameter with the attributes of an event. Tags that are not
+   * attributes of the event are kept as they are.
+   * 
+   * @param event
+   *          the event whose attributes are used
+   * @return the parameter with its tags replaced
+   */
+  public String render(Event event) {
+    if (!hasAttributes()) {
+      return source;
+    }
+
+    String[] values = new String[segments.length];
+    int length = literalLength;
+    for (int i = 0; i < segments.length; i++) {
+      if (isAttribute[i]) {
+        try {
+          values[i] = String.valueOf(event.getAttribute(segments[i]));
+        } catch (IllegalArgumentException e) {
+          values[i] = "<" + segments[i] + ">";
+        }
+      } else {
+        values[i] = segments[i];
+      }
+      length += isAttribute[i] ? values[i].length() : 0;
+    }
+
+    StringBuilder result = new StringBuilder(length);
+    for (String value : values) {
+      result.append(value);
+    }
+    return result.toString();
+  }
+}
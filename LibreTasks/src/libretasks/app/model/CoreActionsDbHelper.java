@@ -44,26 +44,8 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 import libretasks.app.controller.Action;
+import libretasks.app.controller.ActionRegistry;
 import libretasks.app.controller.Event;
-import libretasks.app.controller.actions.CallPhoneAction;
-import libretasks.app.controller.actions.SendGmailAction;
-import libretasks.app.controller.actions.SendSmsAction;
-import libretasks.app.controller.actions.PauseMediaAction;
-import libretasks.app.controller.actions.PlayMediaAction;
-import libretasks.app.controller.actions.SetPhoneLoudAction;
-import libretasks.app.controller.actions.SetPhoneSilentAction;
-import libretasks.app.controller.actions.SetPhoneVibrateAction;
-import libretasks.app.controller.actions.SetScreenBrightnessAction;
-import libretasks.app.controller.actions.ShowAlertAction;
-import libretasks.app.controller.actions.ShowNotificationAction;
-import libretasks.app.controller.actions.ShowWebsiteAction;
-import libretasks.app.controller.actions.TurnOffWifiAction;
-import libretasks.app.controller.actions.TurnOnWifiAction;
-import libretasks.app.controller.actions.TurnOffBluetoothAction;
-import libretasks.app.controller.actions.TurnOnBluetoothAction;
-import libretasks.app.controller.actions.UpdateTwitterStatusAction;
-import libretasks.app.controller.actions.PowerOffAction;
-import libretasks.app.controller.util.ExceptionMessageMap;
 import libretasks.app.controller.util.Logger;
 import libretasks.app.controller.util.OmnidroidException;
 import libretasks.app.model.db.DbHelper;
@@ -80,8 +62,10 @@ import libretasks.app.model.db.RuleActionParameterDbAdapter;
 public class CoreActionsDbHelper {
   private static final String TAG = CoreActionsDbHelper.class.getSimpleName();
 
-  private DbHelper dbHelper;
   private SQLiteDatabase database;
+
+  // This flag marks whether this helper is closed
+  private boolean isClosed = false;
   private RuleActionDbAdapter ruleActionDbAdpater;
   private RuleActionParameterDbAdapter ruleActionParameterDbAdapter;
   private RegisteredActionDbAdapter registeredActionDbAdapter;
@@ -93,8 +77,7 @@ public class CoreActionsDbHelper {
   private final int ACTION_NAME = 1;
 
   public CoreActionsDbHelper(Context context) {
-    dbHelper = new DbHelper(context);
-    database = dbHelper.getReadableDatabase();
+    database = DbHelper.acquire(context);
 
     // Initialize db adapters
     ruleActionDbAdpater = new RuleActionDbAdapter(database);
@@ -105,93 +88,16 @@ public class CoreActionsDbHelper {
   }
 
   /**
-   * Close this database helper object. Attempting to use this object after this call will cause an
-   * {@link IllegalStateException} being raised.
+   * Release this helper's reference to the shared database, see {@link DbHelper#release()}. This
+   * object must not be used after this call, closing it again has no effect.
    */
   public void close() {
-    Log.i(TAG, "closing database.");
-    database.close();
-    
-    // Not necessary, but also close all omnidroidDbHelper databases just in case.
-    dbHelper.close();
-  }
-
-  /**
-   * This method initializes an Action object from a given action name and parameters
-   * 
-   * @param appName
-   *          Name of the application
-   * @param actionName
-   *          Name of the action
-   * @param actionParams
-   *          Parameters required to initialize the action
-   * @return An action object
-   * @throws OmnidroidException
-   *           if the given action cannot be initialized by this method
-   */
-  private Action getAction(String appName, String actionName, HashMap<String, String> actionParams)
-      throws OmnidroidException {
-    // TODO:(Rutvij) Fetch this hard coded data from database.
-
-    if (appName.equals(SendSmsAction.APP_NAME) 
-        && actionName.equals(SendSmsAction.ACTION_NAME)) {
-      return new SendSmsAction(actionParams);
-    } else if (appName.equals(CallPhoneAction.APP_NAME)
-        && actionName.equals(CallPhoneAction.ACTION_NAME)) {
-      return new CallPhoneAction(actionParams);
-    } else if (appName.equals(SendGmailAction.APP_NAME)
-        && actionName.equals(SendGmailAction.ACTION_NAME)) {
-      return new SendGmailAction(actionParams);
-    } else if (appName.equals(ShowAlertAction.APP_NAME)
-        && actionName.equals(ShowAlertAction.ACTION_NAME)) {
-      return new ShowAlertAction(actionParams);
-    } else if (appName.equals(ShowNotificationAction.APP_NAME)
-        && actionName.equals(ShowNotificationAction.ACTION_NAME)) {
-      return new ShowNotificationAction(actionParams);
-    } else if (appName.equals(ShowWebsiteAction.APP_NAME)
-        && actionName.equals(ShowWebsiteAction.ACTION_NAME)) {
-      return new ShowWebsiteAction(actionParams);
-    } else if (appName.equals(SetScreenBrightnessAction.APP_NAME)
-        && actionName.equals(SetScreenBrightnessAction.ACTION_NAME)) {
-      return new SetScreenBrightnessAction(actionParams);
-    } else if (appName.equals(PauseMediaAction.APP_NAME)
-        && actionName.equals(PauseMediaAction.ACTION_NAME)) {
-      return new PauseMediaAction(actionParams);
-    } else if (appName.equals(PlayMediaAction.APP_NAME)
-        && actionName.equals(PlayMediaAction.ACTION_NAME)) {
-      return new PlayMediaAction(actionParams);
-    } else if (appName.equals(SetPhoneLoudAction.APP_NAME)
-        && actionName.equals(SetPhoneLoudAction.ACTION_NAME)) {
-      return new SetPhoneLoudAction(actionParams);
-    } else if (appName.equals(SetPhoneSilentAction.APP_NAME)
-        && actionName.equals(SetPhoneSilentAction.ACTION_NAME)) {
-      return new SetPhoneSilentAction(actionParams);
-    } else if (appName.equals(SetPhoneVibrateAction.APP_NAME)
-        && actionName.equals(SetPhoneVibrateAction.ACTION_NAME)) {
-      return new SetPhoneVibrateAction(actionParams);
-    } else if (appName.equals(TurnOffWifiAction.APP_NAME)
-        && actionName.equals(TurnOffWifiAction.ACTION_NAME)) {
-      return new TurnOffWifiAction(actionParams);
-    } else if (appName.equals(TurnOnWifiAction.APP_NAME)
-        && actionName.equals(TurnOnWifiAction.ACTION_NAME)) {
-      return new TurnOnWifiAction(actionParams);
-    } else if (appName.equals(TurnOffBluetoothAction.APP_NAME)
-        && actionName.equals(TurnOffBluetoothAction.ACTION_NAME)) {
-      return new TurnOffBluetoothAction(actionParams);
-    } else if (appName.equals(TurnOnBluetoothAction.APP_NAME)
-        && actionName.equals(TurnOnBluetoothAction.ACTION_NAME)) {
-      return new TurnOnBluetoothAction(actionParams);
-    } else if (appName.equals(UpdateTwitterStatusAction.APP_NAME)
-        && actionName.equals(UpdateTwitterStatusAction.ACTION_NAME)) {
-      return new UpdateTwitterStatusAction(actionParams);
-    } else if (appName.equals(PowerOffAction.APP_NAME)
-            && actionName.equals(PowerOffAction.ACTION_NAME)) {
-        return new PowerOffAction(actionParams);
-    } else {
-    	Log.d(TAG, "doesn't catch AppName is: " + appName + " and actionName is: " + actionName);
-      throw new OmnidroidException(120003, ExceptionMessageMap.getMessage(new Integer(120003)
-          .toString()));
+    if (isClosed) {
+      return;
     }
+    isClosed = true;
+    Log.i(TAG, "closing database.");
+    DbHelper.release();
   }
 
   /**
@@ -208,42 +114,11 @@ public class CoreActionsDbHelper {
    *           when this object is already closed
    */
   public String fillParamWithEventAttrib(String paramData, Event event) {
-    if (!database.isOpen()) {
+    if (isClosed) {
       throw new IllegalStateException(TAG + " is already closed.");
     }
-    
-    StringBuilder retVal = new StringBuilder();
-    
-    //the index of current cursor
-    int cursor = 0;
-    while (cursor < paramData.length()) {
-      int openBracketIdx = paramData.indexOf('<', cursor);
-      int closeBracketIdx = paramData.indexOf('>', cursor);
-      
-      //if no valid brancket pair found, append whatever left, and return the string.
-      if (openBracketIdx == -1 || closeBracketIdx == -1 || openBracketIdx + 1 >= closeBracketIdx) {
-        retVal.append(paramData.substring(cursor));
-        break;
-      }
-      
-      //else if the pair is found, substitute "<attr>" with the actual attribute and append that to
-      //the retVal
-      String attr = paramData.substring(openBracketIdx + 1, closeBracketIdx);
-      String param = paramData.substring(openBracketIdx, closeBracketIdx + 1);
-      String paramAttr;
-      try {
-        paramAttr = event.getAttribute(attr);
-      } catch (IllegalArgumentException e) {
-        paramAttr = param;
-      }
-      retVal.append(paramData.substring(cursor, openBracketIdx));
-      retVal.append(paramAttr);
-      
-      //update cursor
-      cursor = closeBracketIdx + 1;
-    }
-    Log.d("fillParamWithEventAttrib", paramData + " -> " + retVal.toString());
-    return retVal.toString();
+
+    return ActionParameterTemplate.get(paramData).render(event);
   }
   
   /**
@@ -256,7 +131,7 @@ public class CoreActionsDbHelper {
    *           when this object is already closed
    */
   private ArrayList<Long> getRuleActionIds(Long ruleId) {
-    if (!database.isOpen()) {
+    if (isClosed) {
       throw new IllegalStateException(TAG + " is already closed.");
     }
 
@@ -281,7 +156,7 @@ public class CoreActionsDbHelper {
    *           when this object is already closed
    */
   private String[] getRegisteredActionInfo(Long ruleActionId) {
-    if (!database.isOpen()) {
+    if (isClosed) {
       throw new IllegalStateException(TAG + " is already closed.");
     }
 
@@ -339,7 +214,7 @@ public class CoreActionsDbHelper {
    */
   private void addDataAndRegisteredParamId(Long ruleActionId, Event event,
       HashMap<Long, String> paramsData, HashMap<Long, Long> paramsRegisteredParamId) {
-    if (!database.isOpen()) {
+    if (isClosed) {
       throw new IllegalStateException(TAG + " is already closed.");
     }
 
@@ -370,7 +245,7 @@ public class CoreActionsDbHelper {
    *           when this object is already closed
    */
   private HashMap<Long, String> getRegisteredActionParamNames() {
-    if (!database.isOpen()) {
+    if (isClosed) {
       throw new IllegalStateException(TAG + " is already closed.");
     }
 
@@ -406,7 +281,7 @@ public class CoreActionsDbHelper {
    *           when this object is already closed
    */
   public ArrayList<Action> getActions(long ruleId, String ruleName, Event event) {
-    if (!database.isOpen()) {
+    if (isClosed) {
       throw new IllegalStateException(TAG + " is already closed.");
     }
 
@@ -451,7 +326,7 @@ public class CoreActionsDbHelper {
 
       // create action using action parameters, action name and application name
       try {
-        action = getAction(appName, actionName, actionParams);
+        action = ActionRegistry.create(appName, actionName, actionParams);
         action.setRuleName(ruleName);
         action.setDatabaseId(ruleActionId);
         action.setActionType(Action.RULE_ACTION);
@@ -36,18 +36,23 @@ package libretasks.app.model;
 import static libretasks.app.model.CursorHelper.getLongFromCursor;
 import static libretasks.app.model.CursorHelper.getStringFromCursor;
 
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.List;
 
 import android.content.Context;
 import android.database.Cursor;
+import libretasks.app.controller.EngineConfig;
 import libretasks.app.model.db.LogDbAdapter;
 import libretasks.app.model.db.LogEventDbAdapter;
 
 /**
- * This class serves as a access layer to the database for Omnidroid's {@code LogEvent} storage.
+ * This class serves as a access layer to Omnidroid's {@code LogEvent} storage. Event logs are kept
+ * in the {@link EventJournal}, the DB table is only read through {@link #getLog(Cursor)}.
  * 
  */
 public class CoreEventLogsDbHelper extends CoreLogsDbHelper {
+  private final EventJournal journal;
 
   /**
    * Creates a new CoreEventDbHelper within the current context and initializes all necessary
@@ -59,6 +64,7 @@ public class CoreEventLogsDbHelper extends CoreLogsDbHelper {
   public CoreEventLogsDbHelper(Context context) {
     super(context);
     logDbAdapter = new LogEventDbAdapter(database);
+    journal = EventJournal.instance(context);
   }
 
   @Override
@@ -76,16 +82,40 @@ public class CoreEventLogsDbHelper extends CoreLogsDbHelper {
     return log;
   }
 
+  @Override
+  public Log getLogMatchingID(long id) {
+    return journal.get(id);
+  }
+
+  @Override
+  public long insert(Log log) {
+    log.setTimestamp((new Date()).getTime());
+    return journal.append((EventLog) log);
+  }
+
+  @Override
+  public List<Log> getLogs() {
+    return new ArrayList<Log>(journal.query(0, Long.MAX_VALUE));
+  }
+
+  @Override
+  public void deleteOldLogs() {
+    // Rows left in the DB from before the journal expire as they used to
+    super.deleteOldLogs();
+    int logSizeLimit = EngineConfig.get(context).getLogSizeLimit();
+    journal.setSizeLimit(logSizeLimit);
+    if (logSizeLimit > 0) {
+      return;
+    }
+    int logLimitHours = EngineConfig.get(context).getLogLimitHours();
+    journal.deleteBefore((new Date()).getTime() - (logLimitHours * LogDbAdapter.TIME_IN_HOUR));
+  }
+
   /**
    * 
-   * @return number of events that were performed in the last minute
+   * @return timestamps of the events that were performed in the last minute, oldest first
    */
-  public int getLogCountDuringLastMinute() {
-    // Fetch all actions recorded in the last minute
-    long logsSinceTimestamp = (new Date()).getTime() - LogDbAdapter.TIME_IN_MINUTE;
-    Cursor logTable = ((LogEventDbAdapter)logDbAdapter).fetchAllSince(logsSinceTimestamp);
-    int count = logTable.getCount();
-    logTable.close();
-    return count;
+  public List<Long> getLogTimestampsDuringLastMinute() {
+    return journal.getTimestampsSince((new Date()).getTime() - LogDbAdapter.TIME_IN_MINUTE);
   }
 }
@@ -38,11 +38,9 @@ import java.util.Date;
 import java.util.List;
 
 import android.content.Context;
-import android.content.SharedPreferences;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
-import android.preference.PreferenceManager;
-import libretasks.app.R;
+import libretasks.app.controller.EngineConfig;
 import libretasks.app.controller.util.Logger;
 import libretasks.app.model.db.DbHelper;
 import libretasks.app.model.db.LogDbAdapter;
@@ -55,19 +53,12 @@ abstract public class CoreLogsDbHelper {
   // Class identifier
   private static final String TAG = CoreLogsDbHelper.class.getSimpleName();
 
-  /**
-   * Default limit of time to keep logs around, specified in hours
-   * 
-   * Unfortunately Android doesn't support integer based arrays with the ListPreference interface,
-   * so we have to convert an integer back from a string. See:
-   * http://code.google.com/p/android/issues/detail?id=2096
-   */
-  protected static final String LOG_LIMIT_DEFAULT = "24";
-
   // DB Management
   protected Context context;
-  protected DbHelper dbHelper;
   protected SQLiteDatabase database;
+
+  // This flag marks whether this helper is closed
+  private boolean isClosed = false;
   protected LogDbAdapter logDbAdapter;
 
   /**
@@ -79,20 +70,20 @@ abstract public class CoreLogsDbHelper {
    */
   public CoreLogsDbHelper(Context context) {
     this.context = context;
-    dbHelper = new DbHelper(context);
-    database = dbHelper.getWritableDatabase();
+    database = DbHelper.acquire(context);
   }
 
   /**
-   * Close this database helper object. Attempting to use this object after this call will cause an
-   * {@link IllegalStateException} being raised.
+   * Release this helper's reference to the shared database, see {@link DbHelper#release()}. This
+   * object must not be used after this call, closing it again has no effect.
    */
   public void close() {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
     Logger.i(TAG, "closing database.");
-    database.close();
-
-    // Not necessary, but also close all dbHelper databases just in case.
-    dbHelper.close();
+    DbHelper.release();
   }
 
   /**
@@ -115,14 +106,14 @@ abstract public class CoreLogsDbHelper {
   }
 
   /**
-   * Insert a new Log record into DB
+   * Insert a new Log record into DB. Old logs are not removed here, see {@link LogWriter} for the
+   * periodic retention task.
    * 
    * @param log
    *          log to store in the DB
    * @return id of the record inserted, -1 if unsuccessful
    */
   public long insert(Log log) {
-    deleteOldLogs();
     log.setTimestamp((new Date()).getTime());
     return logDbAdapter.insert(log);
   }
@@ -145,21 +136,19 @@ abstract public class CoreLogsDbHelper {
   }
 
   public void deleteOldLogs() {
-    if (!database.isOpen()) {
+    if (isClosed) {
       throw new IllegalStateException(TAG + " is already closed.");
     }
 
-    /*
-     * Get the Log limit stored in preferences (in hours)
-     * 
-     * Unfortunately Android doesn't support integer based arrays with the ListPreference interface,
-     * so we have to convert an integer back from a string. See:
-     * http://code.google.com/p/android/issues/detail?id=2096
-     */
-    SharedPreferences prefs = PreferenceManager.getDefaultSharedPreferences(context);
-    String sLogLimitHours = prefs.getString(context.getString(R.string.pref_key_log_limit),
-        LOG_LIMIT_DEFAULT);
-    int logLimitHours = Integer.parseInt(sLogLimitHours);
+    // Logs kept as a ring of entries are trimmed on insert, only a changed size is caught up here
+    int logSizeLimit = EngineConfig.get(context).getLogSizeLimit();
+    if (logSizeLimit > 0) {
+      logDbAdapter.deleteAllButNewest(logSizeLimit);
+      return;
+    }
+
+    // Get the Log limit stored in preferences (in hours)
+    int logLimitHours = EngineConfig.get(context).getLogLimitHours();
 
     // Convert hours to a limit based on timestamp
     long logsBeforeTimestamp = (new Date()).getTime() - (logLimitHours * LogDbAdapter.TIME_IN_HOUR);
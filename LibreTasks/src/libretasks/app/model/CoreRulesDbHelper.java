@@ -35,6 +35,8 @@ package libretasks.app.model;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Set;
 
 import android.content.Context;
 import android.database.Cursor;
@@ -42,6 +44,8 @@ import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 import libretasks.app.controller.Filter;
 import libretasks.app.controller.Rule;
+import libretasks.app.controller.datatypes.OmniArea;
+import libretasks.app.controller.util.DataTypeValidationException;
 import libretasks.app.controller.util.ExceptionMessageMap;
 import libretasks.app.controller.util.OmnidroidRuntimeException;
 import libretasks.app.controller.util.Tree;
@@ -51,6 +55,8 @@ import libretasks.app.model.db.DbHelper;
 import libretasks.app.model.db.RegisteredAppDbAdapter;
 import libretasks.app.model.db.RegisteredEventAttributeDbAdapter;
 import libretasks.app.model.db.RegisteredEventDbAdapter;
+import libretasks.app.model.db.RuleActionDbAdapter;
+import libretasks.app.model.db.RuleActionParameterDbAdapter;
 import libretasks.app.model.db.RuleDbAdapter;
 import libretasks.app.model.db.RuleFilterDbAdapter;
 
@@ -60,9 +66,11 @@ import libretasks.app.model.db.RuleFilterDbAdapter;
  */
 public class CoreRulesDbHelper {
   private static final String TAG = CoreActionsDbHelper.class.getSimpleName();
-  private DbHelper dbHelper;
   private SQLiteDatabase database;
 
+  // This flag marks whether this helper is closed
+  private boolean isClosed = false;
+
   private RegisteredAppDbAdapter applicationDbAdapter;
   private RegisteredEventDbAdapter eventDbAdapter;
   private RegisteredEventAttributeDbAdapter eventAttributeDbAdapter;
@@ -70,9 +78,14 @@ public class CoreRulesDbHelper {
   private RuleFilterDbAdapter filterDbAdapter;
   private DataFilterDbAdapter filterComparisonDbAdapter;
   private DataTypeDbAdapter filterDataTypeDbAdapter;
+  private RuleActionDbAdapter ruleActionDbAdapter;
+  private RuleActionParameterDbAdapter ruleActionParameterDbAdapter;
 
   private final long rootID = -1;
 
+  /** Returned by {@link #getEventID(String, String)} when the event is not registered */
+  private static final long NO_EVENT = -1;
+
   /**
    * Creates a new CoreDbHelper within the current context and initializes all necessary database
    * adapters.
@@ -81,8 +94,7 @@ public class CoreRulesDbHelper {
    *          context for the application database resource
    */
   public CoreRulesDbHelper(Context context) {
-    dbHelper = new DbHelper(context);
-    database = dbHelper.getWritableDatabase();
+    database = DbHelper.acquire(context);
 
     applicationDbAdapter = new RegisteredAppDbAdapter(database);
     eventDbAdapter = new RegisteredEventDbAdapter(database);
@@ -91,6 +103,8 @@ public class CoreRulesDbHelper {
     filterDbAdapter = new RuleFilterDbAdapter(database);
     filterComparisonDbAdapter = new DataFilterDbAdapter(database);
     filterDataTypeDbAdapter = new DataTypeDbAdapter(database);
+    ruleActionDbAdapter = new RuleActionDbAdapter(database);
+    ruleActionParameterDbAdapter = new RuleActionParameterDbAdapter(database);
   }
 
   /**
@@ -106,19 +120,180 @@ public class CoreRulesDbHelper {
     if (appName == null || eventName == null) {
       throw new OmnidroidRuntimeException(140000, ExceptionMessageMap
           .getMessage(new Integer(140000).toString()));
-    } else if (!database.isOpen()) {
+    } else if (isClosed) {
       throw new IllegalStateException(TAG + " is already closed.");
     }
 
     ArrayList<Rule> rules = new ArrayList<Rule>();
 
+    // Gets the event id to retrieve the list of rules that match it
+    long eventID = getEventID(appName, eventName);
+    if (eventID == NO_EVENT) {
+      return rules;
+    }
+
+    // Fetch all rules that match this event and are enabled
+    Cursor ruleTable = ruleDbAdapter.fetchAll(eventID, null, null, true, null);
+
+    if (ruleTable.getCount() == 0) {
+      Log.d(TAG, "No rules matched this event, return empty list");
+      ruleTable.close();
+      return rules;
+    }
+
+    // Build a rule for each row in the database and add it to the rule list
+    while (ruleTable.moveToNext()) {
+      rules.add(getRule(ruleTable));
+    }
+
+    ruleTable.close();
+    return rules;
+  }
+
+  /**
+   * Lists the events that have at least one enabled rule and belong to an enabled application.
+   * 
+   * @return a list of String arrays {application name, event name}
+   * @throws IllegalStateException
+   *           when this object is already closed
+   */
+  public ArrayList<String[]> getEventsWithEnabledRules() {
+    if (isClosed) {
+      throw new IllegalStateException(TAG + " is already closed.");
+    }
+
+    ArrayList<String[]> events = new ArrayList<String[]>();
+    Cursor cursor = ruleDbAdapter.fetchEnabledEvents();
+    while (cursor.moveToNext()) {
+      events.add(new String[] {
+          CursorHelper.getStringFromCursor(cursor, RegisteredAppDbAdapter.KEY_APPNAME),
+          CursorHelper.getStringFromCursor(cursor, RegisteredEventDbAdapter.KEY_EVENTNAME) });
+    }
+    cursor.close();
+    return events;
+  }
+
+  /**
+   * Collects the areas compared against by the near and away filters of all enabled rules.
+   * 
+   * @return the list of areas, empty if no enabled rule filters on an area
+   * @throws IllegalStateException
+   *           when this object is already closed
+   */
+  public ArrayList<OmniArea> getGeofences() {
+    if (isClosed) {
+      throw new IllegalStateException(TAG + " is already closed.");
+    }
+
+    ArrayList<OmniArea> areas = new ArrayList<OmniArea>();
+    Cursor ruleTable = ruleDbAdapter.fetchAll(null, null, null, true, null);
+    while (ruleTable.moveToNext()) {
+      Cursor filterTable = filterDbAdapter.fetchAll(CursorHelper.getLongFromCursor(ruleTable,
+          RuleDbAdapter.KEY_RULEID), null, null, null, null, null);
+      while (filterTable.moveToNext()) {
+        Cursor cursor = filterComparisonDbAdapter.fetch(CursorHelper.getLongFromCursor(filterTable,
+            RuleFilterDbAdapter.KEY_DATAFILTERID));
+        boolean isAreaFilter = cursor.moveToFirst()
+            && OmniArea.isValidFilter(CursorHelper.getStringFromCursor(cursor,
+                DataFilterDbAdapter.KEY_DATAFILTERNAME));
+        cursor.close();
+        if (!isAreaFilter) {
+          continue;
+        }
+
+        try {
+          OmniArea area = new OmniArea(CursorHelper.getStringFromCursor(filterTable,
+              RuleFilterDbAdapter.KEY_RULEFILTERDATA));
+          if (!areas.contains(area)) {
+            areas.add(area);
+          }
+        } catch (DataTypeValidationException e) {
+          Log.w(TAG, "Ignoring invalid area in rule filter: " + e.getMessage());
+        }
+      }
+      filterTable.close();
+    }
+    ruleTable.close();
+    return areas;
+  }
+
+  /**
+   * Collects the names of the event attributes used by the enabled rules of an event, either in a
+   * filter or as an {@code <attribute>} tag in an action parameter.
+   * 
+   * @param appName
+   *          the name of the application of the event
+   * @param eventName
+   *          the name of the event
+   * @return the set of attribute names used by the rules, empty if no enabled rule matches
+   * @throws IllegalStateException
+   *           when this object is already closed
+   */
+  public Set<String> getAttributesUsedByEvent(String appName, String eventName) {
+    if (appName == null || eventName == null) {
+      throw new OmnidroidRuntimeException(140000, ExceptionMessageMap
+          .getMessage(new Integer(140000).toString()));
+    } else if (isClosed) {
+      throw new IllegalStateException(TAG + " is already closed.");
+    }
+
+    Set<String> attributes = new HashSet<String>();
+    long eventID = getEventID(appName, eventName);
+    if (eventID == NO_EVENT) {
+      return attributes;
+    }
+
+    Cursor ruleTable = ruleDbAdapter.fetchAll(eventID, null, null, true, null);
+    while (ruleTable.moveToNext()) {
+      long ruleID = CursorHelper.getLongFromCursor(ruleTable, RuleDbAdapter.KEY_RULEID);
+
+      // Attributes compared by the filters of the rule
+      Cursor filterTable = filterDbAdapter.fetchAll(ruleID, null, null, null, null, null);
+      while (filterTable.moveToNext()) {
+        Cursor cursor = eventAttributeDbAdapter.fetch(CursorHelper.getLongFromCursor(filterTable,
+            RuleFilterDbAdapter.KEY_EVENTATTRIBUTEID));
+        if (cursor.moveToFirst()) {
+          attributes.add(CursorHelper.getStringFromCursor(cursor,
+              RegisteredEventAttributeDbAdapter.KEY_EVENTATTRIBUTENAME));
+        }
+        cursor.close();
+      }
+      filterTable.close();
+
+      // Attributes filled into the parameters of the rule actions
+      Cursor ruleActionTable = ruleActionDbAdapter.fetchAll(ruleID, null);
+      while (ruleActionTable.moveToNext()) {
+        Cursor paramTable = ruleActionParameterDbAdapter.fetchAll(CursorHelper.getLongFromCursor(
+            ruleActionTable, RuleActionDbAdapter.KEY_RULEACTIONID), null, null);
+        while (paramTable.moveToNext()) {
+          ActionParameterTemplate.get(CursorHelper.getStringFromCursor(paramTable,
+              RuleActionParameterDbAdapter.KEY_RULEACTIONPARAMETERDATA)).addAttributes(attributes);
+        }
+        paramTable.close();
+      }
+      ruleActionTable.close();
+    }
+    ruleTable.close();
+    return attributes;
+  }
+
+  /**
+   * Looks up the database ID of an event of an enabled application.
+   * 
+   * @param appName
+   *          the name of the application of the event
+   * @param eventName
+   *          the name of the event
+   * @return the ID of the event, or {@link #NO_EVENT} if there is no such event
+   */
+  private long getEventID(String appName, String eventName) {
     // Use the appName and eventName to find a unique event in the database
     Cursor appCursor = applicationDbAdapter.fetchAll(appName, null, true);
 
     if (appCursor.getCount() == 0) {
       Log.d(TAG, "No enabled applications match this event's application " + appName);
       appCursor.close();
-      return rules;
+      return NO_EVENT;
     }
 
     appCursor.moveToFirst();
@@ -129,31 +304,14 @@ public class CoreRulesDbHelper {
     if (eventCursor.getCount() == 0) {
       Log.d(TAG, "This application does not have an event matching this event's name");
       eventCursor.close();
-      return rules;
+      return NO_EVENT;
     }
 
-    // Gets the event id to retrieve the list of rules that match it
     eventCursor.moveToFirst();
     long eventID = CursorHelper
         .getLongFromCursor(eventCursor, RegisteredEventDbAdapter.KEY_EVENTID);
     eventCursor.close();
-
-    // Fetch all rules that match this event and are enabled
-    Cursor ruleTable = ruleDbAdapter.fetchAll(eventID, null, null, true, null);
-
-    if (ruleTable.getCount() == 0) {
-      Log.d(TAG, "No rules matched this event, return empty list");
-      ruleTable.close();
-      return rules;
-    }
-
-    // Build a rule for each row in the database and add it to the rule list
-    while (ruleTable.moveToNext()) {
-      rules.add(getRule(ruleTable));
-    }
-
-    ruleTable.close();
-    return rules;
+    return eventID;
   }
 
   /**
@@ -291,15 +449,16 @@ public class CoreRulesDbHelper {
   }
 
   /**
-   * Close this database helper object. Attempting to use this object after this call will cause an
-   * {@link IllegalStateException} being raised.
+   * Release this helper's reference to the shared database, see {@link DbHelper#release()}. This
+   * object must not be used after this call, closing it again has no effect.
    */
   public void close() {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
     Log.i(TAG, "closing database.");
-    database.close();
-    
-    // Not necessary, but also close all omnidroidDbHelper databases just in case.
-    dbHelper.close();
+    DbHelper.release();
   }
 
   public int getActiveRuleCount() {
@@ -50,28 +50,30 @@ public class DataFilterIDLookup {
   private static final String TAG = DataFilterIDLookup.class.getSimpleName();
   private DataTypeDbAdapter dataTypeDbAdapter;
   private DataFilterDbAdapter dataFilterDbAdapter;
-  private DbHelper omnidroidDbHelper;
   private SQLiteDatabase database; 
+
+  // This flag marks whether this helper is closed
+  private boolean isClosed = false;
   private HashMap<DualKey<String, String>, Long> dataFilterIDMap;
 
   public DataFilterIDLookup(Context context) {
-    omnidroidDbHelper = new DbHelper(context);
-    database = omnidroidDbHelper.getWritableDatabase();
+    database = DbHelper.acquire(context);
     dataTypeDbAdapter = new DataTypeDbAdapter(database);
     dataFilterDbAdapter = new DataFilterDbAdapter(database);
     dataFilterIDMap = new HashMap<DualKey<String, String>, Long>();
   }
 
   /**
-   * Close this database helper object. Attempting to use this object after this call will cause an
-   * {@link IllegalStateException} being raised.
+   * Release this helper's reference to the shared database, see {@link DbHelper#release()}. This
+   * object must not be used after this call, closing it again has no effect.
    */
   public void close() {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
     Log.i(TAG, "closing database.");
-    database.close();
-    
-    // Not necessary, but also close all omnidroidDbHelper databases just in case.
-    omnidroidDbHelper.close();
+    DbHelper.release();
   }
 
   /**
@@ -85,7 +87,7 @@ public class DataFilterIDLookup {
    *           when this object is already closed
    */
   public long getDataFilterID(String dataTypeName, String dataFilterName) {
-    if (!database.isOpen()) {
+    if (isClosed) {
       throw new IllegalStateException(TAG + " is already closed.");
     }
     
@@ -112,7 +114,7 @@ public class DataFilterIDLookup {
   public long getDataFilterID(String dataTypeName, String compareDataTypeName, String dataFilterName) {
     if (dataTypeName == null || dataFilterName == null) {
       throw new IllegalArgumentException("Arguments null.");
-    } else if (!database.isOpen()) {
+    } else if (isClosed) {
       throw new IllegalStateException(TAG + " is already closed.");
     }
 
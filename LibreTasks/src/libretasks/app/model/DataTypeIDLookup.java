@@ -48,27 +48,29 @@ import libretasks.app.model.db.DbHelper;
 public class DataTypeIDLookup {
   private static final String TAG = DataTypeIDLookup.class.getSimpleName();
   private DataTypeDbAdapter dataTypeDbAdapter;
-  private DbHelper omnidroidDbHelper;
   private SQLiteDatabase database;
+
+  // This flag marks whether this helper is closed
+  private boolean isClosed = false;
   private HashMap<String, Long> dataTypeIDMap;
   
   public DataTypeIDLookup(Context context){
-    omnidroidDbHelper = new DbHelper(context);
-    database = omnidroidDbHelper.getWritableDatabase();
+    database = DbHelper.acquire(context);
     dataTypeDbAdapter = new DataTypeDbAdapter(database);
     dataTypeIDMap= new HashMap<String, Long>();
   }
   
   /**
-   * Close this database helper object. Attempting to use this object after this call will cause an
-   * {@link IllegalStateException} being raised.
+   * Release this helper's reference to the shared database, see {@link DbHelper#release()}. This
+   * object must not be used after this call, closing it again has no effect.
    */
   public void close() {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
     Log.i(TAG, "closing database.");
-    database.close();
-    
-    // Not necessary, but also close all omnidroidDbHelper databases just in case.
-    omnidroidDbHelper.close();
+    DbHelper.release();
   }
   
   /**
@@ -84,7 +86,7 @@ public class DataTypeIDLookup {
   public long getDataTypeID(String dataTypeName) {
     if (dataTypeName == null) {
       throw new IllegalArgumentException("Arguments null.");
-    } else if (!database.isOpen()) {
+    } else if (isClosed) {
       throw new IllegalStateException(TAG + " is already closed.");
     }
     
@@ -0,0 +1,817 @@
+/*  
+ * Copyright (c) 2016  LibreTasks - https://github.com/biotinker/LibreTasks  
+ *  
+ *  This file is free software: you may copy, redistribute and/or modify it  
+ *  under the terms of the GNU General Public License as published by the  
+ *  Free Software Foundation, either version 3 of the License, or (at your  
+ *  option) any later version.  
+ *  
+ *  This file is distributed in the hope that it will be useful, but  
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of  
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU  
+ *  General Public License for more details.  
+ *  
+ *  You should have received a copy of the GNU General Public License  
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package libretasks.app.model;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import android.content.Context;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import android.os.Bundle;
+import libretasks.app.controller.util.Logger;
+import libretasks.app.model.db.DbHelper;
+import libretasks.app.model.db.LogActionDbAdapter;
+import libretasks.app.model.db.LogDbAdapter;
+import libretasks.app.model.db.LogEventDbAdapter;
+
+/**
+ * Append-only store for {@link EventLog}s, kept apart from SQLite so that recording an event costs
+ * a memory copy instead of a DB transaction.
+ * <p>
+ * The journal is a directory of fixed size segment files which are memory-mapped and filled front
+ * to back. Every record is framed as {@code [length][crc32][payload]}; the payload and checksum
+ * are written before the length, so a record only becomes visible once it is complete. Nothing is
+ * forced to disk per event, the kernel writes the mapped pages back on its own; a segment is only
+ * forced once, when it is sealed because the next one is started. A process crash can only tear
+ * the last segment, but after a power loss any page that had not been written back yet may be
+ * missing, so on startup every segment is checked up to the first record with a bad length or
+ * checksum and only the records in front of it are kept. Only the last segment stays mapped, the
+ * sealed ones are mapped again for each read.
+ * <p>
+ * Event IDs are referenced by {@link ActionLog}s in the DB, so they must never be reused, even
+ * once every segment has been deleted. The highest ID handed out is kept in {@link #ID_FILE}, see
+ * {@link #reserveIds(long)}.
+ * <p>
+ * The payload holds the event ID, timestamp, application and event name followed by the intent
+ * extras with their types, see {@link #encode(EventLog)}.
+ * <p>
+ * Segments double as time partitions: a new segment is started with the first event of every
+ * hour, so {@link #deleteBefore(long)} expires old events by deleting whole files, one hour at a
+ * time, without touching the events that are kept.
+ */
+public class EventJournal {
+  private static final String TAG = EventJournal.class.getSimpleName();
+
+  private static final String DIRECTORY = "journal";
+  private static final String SEGMENT_PREFIX = "events-";
+  private static final String ID_FILE = "next-id";
+
+  /** Number of IDs reserved with each write of the {@link #ID_FILE}. */
+  private static final long ID_BLOCK = 1024;
+
+  /** Size (in bytes) of a segment file, also the largest record that can be stored. */
+  private static final int SEGMENT_SIZE = 256 * 1024;
+
+  /** Time span (in milliseconds) of the events a segment may hold. */
+  private static final long PARTITION_INTERVAL = LogDbAdapter.TIME_IN_HOUR;
+
+  /** Size (in bytes) of the length and checksum in front of every payload. */
+  private static final int FRAME_HEADER_SIZE = 8;
+
+  private static final String CHARSET = "UTF-8";
+
+  // Types of the stored event attributes
+  private static final byte TYPE_STRING = 0;
+  private static final byte TYPE_INT = 1;
+  private static final byte TYPE_LONG = 2;
+  private static final byte TYPE_BOOLEAN = 3;
+  private static final byte TYPE_FLOAT = 4;
+  private static final byte TYPE_DOUBLE = 5;
+
+  /** The one and only EventJournal instance. */
+  private static EventJournal instance;
+
+  private final File directory;
+
+  /** All segments, oldest first. The last one is the one appended to. */
+  private final ArrayList<Segment> segments = new ArrayList<Segment>();
+
+  private long nextId = 1;
+
+  /** First ID not covered by the {@link #ID_FILE}. */
+  private long reservedId;
+
+  /** Number of segments the events of a size limit are spread over, see {@link #setSizeLimit}. */
+  private static final int SEGMENTS_PER_SIZE_LIMIT = 8;
+
+  /** Most events a segment may hold, limited only by its size unless there is a size limit. */
+  private int segmentCapacity = Integer.MAX_VALUE;
+
+  /**
+   * A segment file and the range of events it holds.
+   */
+  private static class Segment {
+    final File file;
+
+    /** The mapping appended to, null once the segment is sealed. */
+    MappedByteBuffer buffer;
+
+    /** Offset of the first unused byte. */
+    int end;
+    int count;
+    long minTimestamp = Long.MAX_VALUE;
+    long maxTimestamp = Long.MIN_VALUE;
+    long lastId;
+
+    /** The partition of the first event, see {@link #PARTITION_INTERVAL}. */
+    long partition;
+
+    Segment(File file, MappedByteBuffer buffer) {
+      this.file = file;
+      this.buffer = buffer;
+    }
+
+    void add(long id, long timestamp) {
+      if (count == 0) {
+        partition = timestamp / PARTITION_INTERVAL;
+      }
+      count++;
+      lastId = id;
+      minTimestamp = Math.min(minTimestamp, timestamp);
+      maxTimestamp = Math.max(maxTimestamp, timestamp);
+    }
+
+    boolean overlaps(long from, long to) {
+      return count > 0 && minTimestamp < to && maxTimestamp >= from;
+    }
+
+    /**
+     * @return the records of this segment, or null if a sealed segment could not be mapped
+     */
+    ByteBuffer read() {
+      return buffer != null ? buffer : map(file, false);
+    }
+  }
+
+  private EventJournal(Context context, File directory) {
+    this.directory = directory;
+    open(context);
+  }
+
+  /**
+   * @param context
+   *          context for the application files directory
+   * @return the process wide event journal, opened and recovered on first use, which
+   *         {@link LogWriter} does on its own thread
+   */
+  public static synchronized EventJournal instance(Context context) {
+    if (instance == null) {
+      Context appContext = context.getApplicationContext();
+      instance = new EventJournal(appContext, new File(appContext.getFilesDir(), DIRECTORY));
+    }
+    return instance;
+  }
+
+  /**
+   * Append an event log to the journal and set its ID. The log must have been timestamped.
+   * 
+   * @param log
+   *          the event log to store
+   * @return the ID of the stored event, -1 if it could not be stored
+   */
+  public synchronized long append(EventLog log) {
+    long id = nextId;
+    log.setID(id);
+    byte[] payload;
+    try {
+      payload = encode(log);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+    int size = FRAME_HEADER_SIZE + payload.length;
+    if (size > SEGMENT_SIZE) {
+      Logger.w(TAG, "Dropping event too large for the journal: " + log.getEventName());
+      log.setID(-1);
+      return -1;
+    }
+
+    Segment segment = segments.isEmpty() ? null : segments.get(segments.size() - 1);
+    if (segment == null || segment.buffer == null || segment.end + size > SEGMENT_SIZE
+        || segment.count >= segmentCapacity
+        || (segment.count > 0 && segment.partition != log.getTimestamp() / PARTITION_INTERVAL)) {
+      segment = createSegment(id);
+      if (segment == null) {
+        log.setID(-1);
+        return -1;
+      }
+    }
+
+    if (id >= reservedId) {
+      reserveIds(id + ID_BLOCK);
+    }
+
+    CRC32 crc = new CRC32();
+    crc.update(payload);
+    ByteBuffer buffer = segment.buffer;
+    buffer.position(segment.end + FRAME_HEADER_SIZE);
+    buffer.put(payload);
+    buffer.putInt(segment.end + 4, (int) crc.getValue());
+    // Writing the length last commits the record
+    buffer.putInt(segment.end, payload.length);
+
+    segment.end += size;
+    segment.add(id, log.getTimestamp());
+    nextId++;
+    return id;
+  }
+
+  /**
+   * @param from
+   *          first timestamp to include
+   * @param to
+   *          first timestamp to exclude
+   * @return the events recorded within {@code [from, to)}, oldest first
+   */
+  public synchronized List<EventLog> query(long from, long to) {
+    ArrayList<EventLog> logs = new ArrayList<EventLog>();
+    for (Segment segment : segments) {
+      ByteBuffer data = segment.overlaps(from, to) ? segment.read() : null;
+      if (data == null) {
+        continue;
+      }
+      int offset = 0;
+      while (offset < segment.end) {
+        int length = data.getInt(offset);
+        long timestamp = data.getLong(offset + FRAME_HEADER_SIZE + 8);
+        if (timestamp >= from && timestamp < to) {
+          logs.add(decode(data, offset + FRAME_HEADER_SIZE, length));
+        }
+        offset += FRAME_HEADER_SIZE + length;
+      }
+    }
+    return logs;
+  }
+
+  /**
+   * A record found by {@link #queryBefore(long, long, int)}, decoded once it is known to be needed.
+   */
+  private static class Entry {
+    final ByteBuffer data;
+    final int offset;
+    final long id;
+    final long timestamp;
+
+    Entry(ByteBuffer data, int offset, long id, long timestamp) {
+      this.data = data;
+      this.offset = offset;
+      this.id = id;
+      this.timestamp = timestamp;
+    }
+  }
+
+  /** Newest first by timestamp, then by ID. */
+  private static final Comparator<Entry> NEWEST_FIRST = new Comparator<Entry>() {
+    public int compare(Entry e1, Entry e2) {
+      if (e1.timestamp != e2.timestamp) {
+        return e1.timestamp > e2.timestamp ? -1 : 1;
+      }
+      return e1.id > e2.id ? -1 : (e1.id == e2.id ? 0 : 1);
+    }
+  };
+
+  /**
+   * Get a page of events, newest first, that follows the event with the given key. Segments are
+   * read newest first and only as far back as they can still contribute to the page.
+   * 
+   * @param timestamp
+   *          timestamp of the last event of the previous page, or {@link Long#MAX_VALUE}
+   * @param id
+   *          ID of the last event of the previous page, or {@link Long#MAX_VALUE}
+   * @param limit
+   *          the maximum number of events to return
+   * @return the events older than the given key, newest first
+   */
+  public synchronized List<EventLog> queryBefore(long timestamp, long id, int limit) {
+    ArrayList<Entry> entries = new ArrayList<Entry>();
+    for (int i = segments.size() - 1; i >= 0; i--) {
+      Segment segment = segments.get(i);
+      if (entries.size() >= limit
+          && segment.maxTimestamp < entries.get(limit - 1).timestamp) {
+        break;
+      }
+      if (segment.count == 0 || segment.minTimestamp > timestamp) {
+        continue;
+      }
+      ByteBuffer data = segment.read();
+      if (data == null) {
+        continue;
+      }
+      int offset = 0;
+      while (offset < segment.end) {
+        long entryId = data.getLong(offset + FRAME_HEADER_SIZE);
+        long entryTimestamp = data.getLong(offset + FRAME_HEADER_SIZE + 8);
+        if (entryTimestamp < timestamp || (entryTimestamp == timestamp && entryId < id)) {
+          entries.add(new Entry(data, offset, entryId, entryTimestamp));
+        }
+        offset += FRAME_HEADER_SIZE + data.getInt(offset);
+      }
+      Collections.sort(entries, NEWEST_FIRST);
+      if (entries.size() > limit) {
+        entries.subList(limit, entries.size()).clear();
+      }
+    }
+
+    ArrayList<EventLog> logs = new ArrayList<EventLog>(entries.size());
+    for (Entry entry : entries) {
+      logs.add(decode(entry.data, entry.offset + FRAME_HEADER_SIZE,
+          entry.data.getInt(entry.offset)));
+    }
+    return logs;
+  }
+
+  /**
+   * @param id
+   *          the ID of the event
+   * @return the event with the given ID, or null if it is not in the journal
+   */
+  public synchronized EventLog get(long id) {
+    for (Segment segment : segments) {
+      if (segment.count == 0 || segment.lastId < id) {
+        continue;
+      }
+      ByteBuffer data = segment.read();
+      if (data == null) {
+        return null;
+      }
+      int offset = 0;
+      while (offset < segment.end) {
+        int length = data.getInt(offset);
+        if (data.getLong(offset + FRAME_HEADER_SIZE) == id) {
+          return decode(data, offset + FRAME_HEADER_SIZE, length);
+        }
+        offset += FRAME_HEADER_SIZE + length;
+      }
+      return null;
+    }
+    return null;
+  }
+
+  /**
+   * @param from
+   *          first timestamp to include
+   * @return timestamps of the events recorded since {@code from}, oldest first
+   */
+  public synchronized List<Long> getTimestampsSince(long from) {
+    ArrayList<Long> timestamps = new ArrayList<Long>();
+    for (Segment segment : segments) {
+      ByteBuffer data = segment.overlaps(from, Long.MAX_VALUE) ? segment.read() : null;
+      if (data == null) {
+        continue;
+      }
+      int offset = 0;
+      while (offset < segment.end) {
+        long timestamp = data.getLong(offset + FRAME_HEADER_SIZE + 8);
+        if (timestamp >= from) {
+          timestamps.add(timestamp);
+        }
+        offset += FRAME_HEADER_SIZE + data.getInt(offset);
+      }
+    }
+    Collections.sort(timestamps);
+    return timestamps;
+  }
+
+  /**
+   * Remove the segments that only hold events older than {@code timestamp}. Events in a segment
+   * that also holds newer ones are kept until the whole segment expires.
+   * 
+   * @param timestamp
+   *          the retention cutoff
+   */
+  public synchronized void deleteBefore(long timestamp) {
+    for (int i = segments.size() - 1; i >= 0; i--) {
+      Segment segment = segments.get(i);
+      if (segment.count > 0 && segment.maxTimestamp < timestamp) {
+        deleteSegment(i);
+      }
+    }
+  }
+
+  /**
+   * Keep the journal as a ring of entries instead of by age. Events are removed a segment at a time,
+   * so new segments are started every eighth of {@code count} events and the journal holds at
+   * least {@code count} and less than {@code count} plus an eighth of it.
+   * 
+   * @param count
+   *          the number of events to keep, or 0 to lift the limit and keep events by age
+   */
+  public synchronized void setSizeLimit(int count) {
+    if (count <= 0) {
+      segmentCapacity = Integer.MAX_VALUE;
+      return;
+    }
+    segmentCapacity = (count + SEGMENTS_PER_SIZE_LIMIT - 1) / SEGMENTS_PER_SIZE_LIMIT;
+    deleteAllButNewest(count);
+  }
+
+  /**
+   * Remove the oldest segments as long as the newer ones hold at least {@code count} events. The
+   * segment being appended to is never removed.
+   */
+  private void deleteAllButNewest(int count) {
+    int total = 0;
+    for (Segment segment : segments) {
+      total += segment.count;
+    }
+    while (segments.size() > 1 && total - segments.get(0).count >= count) {
+      total -= segments.get(0).count;
+      deleteSegment(0);
+    }
+  }
+
+  /**
+   * Remove all events. IDs keep counting up from the ones already handed out.
+   */
+  public synchronized void clear() {
+    for (int i = segments.size() - 1; i >= 0; i--) {
+      deleteSegment(i);
+    }
+  }
+
+  private void deleteSegment(int index) {
+    Segment segment = segments.remove(index);
+    if (!segment.file.delete()) {
+      Logger.w(TAG, "Unable to delete " + segment.file);
+    }
+  }
+
+  /**
+   * Load all existing segments, dropping whatever follows the last valid record of the newest one,
+   * and pick up the IDs handed out before.
+   */
+  private void open(Context context) {
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      Logger.w(TAG, "Unable to create " + directory);
+      return;
+    }
+    File[] files = directory.listFiles();
+    if (files == null) {
+      return;
+    }
+
+    ArrayList<File> segmentFiles = new ArrayList<File>();
+    for (File file : files) {
+      if (file.getName().startsWith(SEGMENT_PREFIX)) {
+        segmentFiles.add(file);
+      }
+    }
+    Collections.sort(segmentFiles, new Comparator<File>() {
+      public int compare(File f1, File f2) {
+        long id1 = getFirstId(f1);
+        long id2 = getFirstId(f2);
+        return id1 < id2 ? -1 : (id1 == id2 ? 0 : 1);
+      }
+    });
+
+    for (int i = 0; i < segmentFiles.size(); i++) {
+      File file = segmentFiles.get(i);
+      boolean last = i == segmentFiles.size() - 1;
+      MappedByteBuffer buffer = map(file, last);
+      if (buffer == null) {
+        continue;
+      }
+      Segment segment = new Segment(file, last ? buffer : null);
+      recover(segment, buffer, last);
+      if (segment.count == 0) {
+        // Nothing worth keeping, appends go to a fresh segment
+        file.delete();
+        continue;
+      }
+      segments.add(segment);
+      nextId = Math.max(nextId, segment.lastId + 1);
+    }
+
+    long reserved = readReservedId();
+    if (reserved < 0) {
+      // No IDs handed out by the journal yet, continue after the ones of the event log table
+      reserved = getLastDatabaseId(context) + 1;
+    }
+    nextId = Math.max(nextId, reserved);
+  }
+
+  /**
+   * Index the records of a segment up to the first one with a bad length or checksum, which is
+   * where an append was torn or a page was lost. In the newest segment the frames behind it are
+   * cleared until the first empty header, so they can never be mistaken for a record once they are
+   * overwritten in part by the next appends.
+   */
+  private static void recover(Segment segment, ByteBuffer buffer, boolean last) {
+    int size = buffer.capacity();
+    CRC32 crc = new CRC32();
+    int offset = 0;
+    while (offset + FRAME_HEADER_SIZE <= size) {
+      int length = buffer.getInt(offset);
+      if (length < 16 || offset + FRAME_HEADER_SIZE + length > size) {
+        break;
+      }
+      byte[] payload = new byte[length];
+      buffer.position(offset + FRAME_HEADER_SIZE);
+      buffer.get(payload);
+      crc.reset();
+      crc.update(payload);
+      if ((int) crc.getValue() != buffer.getInt(offset + 4)) {
+        break;
+      }
+      segment.add(buffer.getLong(offset + FRAME_HEADER_SIZE),
+          buffer.getLong(offset + FRAME_HEADER_SIZE + 8));
+      offset += FRAME_HEADER_SIZE + length;
+    }
+    segment.end = offset;
+
+    if (!last) {
+      return;
+    }
+    while (offset + FRAME_HEADER_SIZE <= size && buffer.getLong(offset) != 0) {
+      int length = buffer.getInt(offset);
+      int end = (length < 0 || length > size - offset - FRAME_HEADER_SIZE) ? size : offset
+          + FRAME_HEADER_SIZE + length;
+      for (int i = offset; i < end; i++) {
+        buffer.put(i, (byte) 0);
+      }
+      offset = end;
+    }
+  }
+
+  private Segment createSegment(long firstId) {
+    File file = new File(directory, SEGMENT_PREFIX + firstId);
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      Logger.w(TAG, "Unable to create " + directory);
+      return null;
+    }
+    MappedByteBuffer buffer = map(file, true);
+    if (buffer == null) {
+      return null;
+    }
+    if (!segments.isEmpty()) {
+      // Sealed: written back once, then its mapping is released once no reader holds it anymore
+      Segment sealed = segments.get(segments.size() - 1);
+      if (sealed.buffer != null) {
+        sealed.buffer.force();
+        sealed.buffer = null;
+      }
+    }
+    Segment segment = new Segment(file, buffer);
+    segments.add(segment);
+    return segment;
+  }
+
+  /**
+   * @param file
+   *          the segment file
+   * @param writable
+   *          true to map the segment for appending, creating the file if needed
+   * @return the mapped segment, or null if it could not be mapped
+   */
+  private static MappedByteBuffer map(File file, boolean writable) {
+    RandomAccessFile raf = null;
+    try {
+      raf = new RandomAccessFile(file, writable ? "rw" : "r");
+      if (writable) {
+        raf.setLength(SEGMENT_SIZE);
+      }
+      // The mapping stays valid after the channel is closed
+      return raf.getChannel().map(
+          writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0,
+          raf.length());
+    } catch (IOException e) {
+      Logger.w(TAG, "Unable to map " + file, e);
+      return null;
+    } finally {
+      if (raf != null) {
+        try {
+          raf.close();
+        } catch (IOException e) {
+          // Nothing left to do
+        }
+      }
+    }
+  }
+
+  /**
+   * Persist that all IDs below {@code id} may have been handed out. The file is replaced as a
+   * whole and synced, so a crash leaves either the old or the new value. It is written once per
+   * {@link #ID_BLOCK} events rather than on every append; a restart skips the unused rest of the
+   * block.
+   */
+  private void reserveIds(long id) {
+    File temp = new File(directory, ID_FILE + ".tmp");
+    FileOutputStream out = null;
+    try {
+      out = new FileOutputStream(temp);
+      new DataOutputStream(out).writeLong(id);
+      out.getFD().sync();
+      out.close();
+      out = null;
+      if (!temp.renameTo(new File(directory, ID_FILE))) {
+        throw new IOException("Unable to rename " + temp);
+      }
+      reservedId = id;
+    } catch (IOException e) {
+      // Retried with the next append
+      Logger.w(TAG, "Unable to reserve event IDs", e);
+    } finally {
+      if (out != null) {
+        try {
+          out.close();
+        } catch (IOException e) {
+          // Nothing left to do
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the first ID not handed out according to the {@link #ID_FILE}, or -1 if there is none
+   */
+  private long readReservedId() {
+    File file = new File(directory, ID_FILE);
+    if (!file.exists()) {
+      return -1;
+    }
+    DataInputStream in = null;
+    try {
+      in = new DataInputStream(new FileInputStream(file));
+      return in.readLong();
+    } catch (IOException e) {
+      Logger.w(TAG, "Unable to read " + file, e);
+      return -1;
+    } finally {
+      if (in != null) {
+        try {
+          in.close();
+        } catch (IOException e) {
+          // Nothing left to do
+        }
+      }
+    }
+  }
+
+  /**
+   * @return the highest event ID in use by the DB, either by event logs written before the journal
+   *         existed or by the action logs referring to them
+   */
+  private static long getLastDatabaseId(Context context) {
+    SQLiteDatabase database = DbHelper.acquire(context);
+    try {
+      return Math.max(new LogEventDbAdapter(database).fetchMaxId(), new LogActionDbAdapter(
+          database).fetchMaxLogEventId());
+    } catch (SQLException e) {
+      Logger.w(TAG, "Unable to read the last event ID", e);
+      return 0;
+    } finally {
+      DbHelper.release();
+    }
+  }
+
+  private static long getFirstId(File file) {
+    try {
+      return Long.parseLong(file.getName().substring(SEGMENT_PREFIX.length()));
+    } catch (NumberFormatException e) {
+      return Long.MAX_VALUE;
+    }
+  }
+
+  /**
+   * Serialize an event log as {@code id, timestamp, appName, eventName, attribute count} followed
+   * by {@code name, type, value} for every attribute. Attributes of any other type than the ones
+   * listed as {@code TYPE_*} are stored as strings.
+   */
+  private static byte[] encode(EventLog log) throws UnsupportedEncodingException {
+    Bundle attributes = log.getAttributes();
+    ArrayList<String> keys = new ArrayList<String>();
+    if (attributes != null) {
+      keys.addAll(attributes.keySet());
+    }
+
+    ArrayList<byte[]> strings = new ArrayList<byte[]>();
+    int size = 8 + 8 + 4;
+    size += addString(strings, log.getAppName());
+    size += addString(strings, log.getEventName());
+    for (String key : keys) {
+      Object value = attributes.get(key);
+      size += addString(strings, key) + 1;
+      if (value instanceof Integer || value instanceof Float) {
+        size += 4;
+      } else if (value instanceof Long || value instanceof Double) {
+        size += 8;
+      } else if (value instanceof Boolean) {
+        size += 1;
+      } else {
+        size += addString(strings, String.valueOf(value));
+      }
+    }
+
+    ByteBuffer buffer = ByteBuffer.allocate(size);
+    buffer.putLong(log.getID());
+    buffer.putLong(log.getTimestamp());
+    int next = 0;
+    putString(buffer, strings.get(next++));
+    putString(buffer, strings.get(next++));
+    buffer.putInt(keys.size());
+    for (String key : keys) {
+      Object value = attributes.get(key);
+      putString(buffer, strings.get(next++));
+      if (value instanceof Integer) {
+        buffer.put(TYPE_INT).putInt((Integer) value);
+      } else if (value instanceof Long) {
+        buffer.put(TYPE_LONG).putLong((Long) value);
+      } else if (value instanceof Boolean) {
+        buffer.put(TYPE_BOOLEAN).put((byte) ((Boolean) value ? 1 : 0));
+      } else if (value instanceof Float) {
+        buffer.put(TYPE_FLOAT).putFloat((Float) value);
+      } else if (value instanceof Double) {
+        buffer.put(TYPE_DOUBLE).putDouble((Double) value);
+      } else {
+        buffer.put(TYPE_STRING);
+        putString(buffer, strings.get(next++));
+      }
+    }
+    return buffer.array();
+  }
+
+  private static int addString(List<byte[]> strings, String value)
+      throws UnsupportedEncodingException {
+    byte[] bytes = (value == null ? "" : value).getBytes(CHARSET);
+    strings.add(bytes);
+    return 4 + bytes.length;
+  }
+
+  private static void putString(ByteBuffer buffer, byte[] bytes) {
+    buffer.putInt(bytes.length);
+    buffer.put(bytes);
+  }
+
+  /**
+   * Rebuild the event log stored at {@code offset}, see {@link #encode(EventLog)}.
+   */
+  private static EventLog decode(ByteBuffer source, int offset, int length) {
+    ByteBuffer buffer = source.duplicate();
+    buffer.limit(offset + length);
+    buffer.position(offset);
+
+    long id = buffer.getLong();
+    long timestamp = buffer.getLong();
+    String appName = getString(buffer);
+    String eventName = getString(buffer);
+    int count = buffer.getInt();
+    Bundle attributes = new Bundle();
+    for (int i = 0; i < count; i++) {
+      String key = getString(buffer);
+      byte type = buffer.get();
+      switch (type) {
+      case TYPE_INT:
+        attributes.putInt(key, buffer.getInt());
+        break;
+      case TYPE_LONG:
+        attributes.putLong(key, buffer.getLong());
+        break;
+      case TYPE_BOOLEAN:
+        attributes.putBoolean(key, buffer.get() != 0);
+        break;
+      case TYPE_FLOAT:
+        attributes.putFloat(key, buffer.getFloat());
+        break;
+      case TYPE_DOUBLE:
+        attributes.putDouble(key, buffer.getDouble());
+        break;
+      default:
+        attributes.putString(key, getString(buffer));
+      }
+    }
+
+    String parameters = count > 0 ? attributes.toString() : "";
+    EventLog log = new EventLog(id, timestamp, appName, eventName, parameters, eventName
+        + parameters);
+    log.setAttributes(attributes);
+    return log;
+  }
+
+  private static String getString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.getInt()];
+    buffer.get(bytes);
+    try {
+      return new String(bytes, CHARSET);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
@@ -33,6 +33,7 @@
  *******************************************************************************/
 package libretasks.app.model;
 
+import android.os.Bundle;
 import libretasks.app.controller.Event;
 
 /**
@@ -46,6 +47,7 @@ public class EventLog extends Log {
   String appName;
   String eventName;
   String parameters;
+  Bundle attributes;
 
   /**
    * @param context
@@ -59,6 +61,7 @@ public class EventLog extends Log {
     this.appName = event.getAppName();
     this.eventName = event.getEventName();
     this.parameters = event.getParameters();
+    this.attributes = event.getExtras();
     this.text = event.getEventName() + event.getParameters();
   }
 
@@ -76,6 +79,7 @@ public class EventLog extends Log {
     this.appName = log.appName;
     this.eventName = log.eventName;
     this.parameters = log.parameters;
+    this.attributes = log.attributes;
   }
 
   /**
@@ -126,6 +130,17 @@ public class EventLog extends Log {
     return parameters;
   }
 
+  public void setAttributes(Bundle attributes) {
+    this.attributes = attributes;
+  }
+
+  /**
+   * @return the typed event parameters, or null if they are not known
+   */
+  public Bundle getAttributes() {
+    return attributes;
+  }
+
   public String toString() {
     return "ID: " + id + "\n" + "Timestamp: " + timestamp + "\n" + "Application Name: " + appName
         + "\n" + "Event Name: " + eventName + "\nParameters: " + parameters + "\nText: " + text;
@@ -37,6 +37,7 @@ import static libretasks.app.model.CursorHelper.*;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Map;
 
 import android.content.Context;
 import android.content.Intent;
@@ -46,21 +47,11 @@ import android.os.Bundle;
 import android.util.Log;
 import libretasks.app.R;
 import libretasks.app.controller.Action;
-import libretasks.app.controller.actions.CallPhoneAction;
-import libretasks.app.controller.actions.PowerOffAction;
-import libretasks.app.controller.actions.SendGmailAction;
-import libretasks.app.controller.actions.SendSmsAction;
-import libretasks.app.controller.actions.SetPhoneLoudAction;
-import libretasks.app.controller.actions.SetPhoneSilentAction;
-import libretasks.app.controller.actions.SetPhoneVibrateAction;
-import libretasks.app.controller.actions.SetScreenBrightnessAction;
-import libretasks.app.controller.actions.ShowAlertAction;
-import libretasks.app.controller.actions.ShowNotificationAction;
-import libretasks.app.controller.actions.ShowWebsiteAction;
-import libretasks.app.controller.actions.TurnOffWifiAction;
-import libretasks.app.controller.actions.TurnOnWifiAction;
-import libretasks.app.controller.actions.UpdateTwitterStatusAction;
-import libretasks.app.controller.util.ExceptionMessageMap;
+import libretasks.app.controller.ActionRegistry;
+import libretasks.app.controller.CausalChain;
+import libretasks.app.controller.ResultProcessor;
+import libretasks.app.controller.RetryScheduler;
+import libretasks.app.controller.external.attributes.EventMonitoringService;
 import libretasks.app.controller.util.Logger;
 import libretasks.app.controller.util.OmnidroidException;
 import libretasks.app.model.db.DbHelper;
@@ -79,41 +70,35 @@ import libretasks.app.view.simple.UtilUI;
 public class FailedActionsDbHelper {
   private static final String TAG = FailedActionsDbHelper.class.getSimpleName();
 
-  private DbHelper dbHelper;
   private SQLiteDatabase database;
+
+  // This flag marks whether this helper is closed
+  private boolean isClosed = false;
   private FailedActionsDbAdapter failedActionsDbAdapter;
   private FailedActionParameterDbAdapter failedActionParameterDbAdapter;
-  private RegisteredActionDbAdapter registeredActionDbAdapter;
-  private RegisteredAppDbAdapter registeredAppDbAdapter;
-  private RuleDbAdapter ruleDbAdapter;
   private RuleActionDbAdapter ruleActionDbAdapter;
   
   private Context context;
-  
-  // Action info constants
-  private final int KEY_APP_NAME = 0;
-  private final int KEY_ACTION_NAME = 1;
 
   public FailedActionsDbHelper(Context context) {
     this.context = context;
-    dbHelper = new DbHelper(context);
-    database = dbHelper.getWritableDatabase();
+    database = DbHelper.acquire(context);
     failedActionsDbAdapter = new FailedActionsDbAdapter(database);
     failedActionParameterDbAdapter = new FailedActionParameterDbAdapter(database);
-    registeredActionDbAdapter = new RegisteredActionDbAdapter(database);
-    registeredAppDbAdapter = new RegisteredAppDbAdapter(database);
-    ruleDbAdapter = new RuleDbAdapter(database);
     ruleActionDbAdapter = new RuleActionDbAdapter(database);
   }
 
   /**
-   * Close this database helper object. Attempting to use this object after this call will cause an
-   * {@link IllegalStateException} being raised.
+   * Release this helper's reference to the shared database, see {@link DbHelper#release()}. This
+   * object must not be used after this call, closing it again has no effect.
    */
   public void close() {
+    if (isClosed) {
+      return;
+    }
+    isClosed = true;
     Log.i(TAG, "closing database.");
-    database.close();
-    dbHelper.close();
+    DbHelper.release();
   }
 
   /**
@@ -128,196 +113,131 @@ public class FailedActionsDbHelper {
    *           when this object is already closed
    */
   public ArrayList<Action> getActions(int failureType) {
-    if (!database.isOpen()) {
+    if (isClosed) {
       throw new IllegalStateException(TAG + " is already closed.");
     }
 
-    ArrayList<Action> actions = new ArrayList<Action>();
-    
-    Action action;
-    String[] actionInfo;
-    HashMap<String, String> actionParams;
-    for (Long failedActionId : getFailedActionIds(failureType)) {
-      actionInfo = getRegisteredActionInfo(failedActionId);
-      if (actionInfo == null) {
-        throw new IllegalArgumentException(
-            "Cannot find ActionId, ApplicationName or ActionName for: " + failedActionId);
-      }
-      
-      actionParams = getParameters(failedActionId);
-      
-      Cursor cursor = failedActionsDbAdapter.fetch(failedActionId);
-      cursor = ruleDbAdapter.fetch(getLongFromCursor(cursor, FailedActionsDbAdapter.KEY_RULEID));
-      try {
-        action = getAction(actionInfo[KEY_APP_NAME], actionInfo[KEY_ACTION_NAME], actionParams);
-        action.setRuleName(getStringFromCursor(cursor, RuleDbAdapter.KEY_RULENAME));
-        action.setNotification(getBooleanFromCursor(cursor, RuleDbAdapter.KEY_NOTIFICATION));
-        action.setDatabaseId(failedActionId);
-        action.setActionType(Action.FAILED_ACTION);
-        actions.add(action); 
-      } catch (OmnidroidException e) {
-        Logger.w(TAG, e.toString(), e);
-        Logger.w(TAG, e.getLocalizedMessage());
-      }
-      cursor.close();
-    }
-    
+    Cursor cursor = failedActionsDbAdapter.fetchAllWithDetails(failureType, null);
+    ArrayList<Action> actions = getActions(cursor, null);
+    cursor.close();
     return actions;
   }
-  
-  private HashMap<String, String> getParameters (Long failedActionId) {
-    
-    HashMap<String, String> parameters = new HashMap<String, String>();
-    Cursor cursor = failedActionParameterDbAdapter.fetchAll(failedActionId, null, null); 
-    while (cursor.moveToNext()) {
-      parameters.put(getStringFromCursor(cursor, FailedActionParameterDbAdapter.KEY_ACTIONPARAMETERNAME),
-          getStringFromCursor(cursor, FailedActionParameterDbAdapter.KEY_FAILEDACTIONPARAMETERDATA));
-    }
-    cursor.close();
-    return parameters;
-  } 
-  
-  /**
-   * This method initializes an Action object from a given action name and parameters
-   * 
-   * @param appName
-   *          Name of the application
-   * @param actionName
-   *          Name of the action
-   * @param actionParams
-   *          Parameters required to initialize the action
-   * @return An action object
-   * @throws OmnidroidException
-   *           if the given action cannot be initialized by this method
-   */
-  private Action getAction(String appName, String actionName, HashMap<String, String> actionParams)
-      throws OmnidroidException {
 
-    if (appName.equals(SendSmsAction.APP_NAME) 
-        && actionName.equals(SendSmsAction.ACTION_NAME)) {
-      return new SendSmsAction(actionParams);
-    } else if (appName.equals(CallPhoneAction.APP_NAME)
-        && actionName.equals(CallPhoneAction.ACTION_NAME)) {
-      return new CallPhoneAction(actionParams);
-    } else if (appName.equals(SendGmailAction.APP_NAME)
-        && actionName.equals(SendGmailAction.ACTION_NAME)) {
-      return new SendGmailAction(actionParams);
-    } else if (appName.equals(ShowAlertAction.APP_NAME)
-        && actionName.equals(ShowAlertAction.ACTION_NAME)) {
-      return new ShowAlertAction(actionParams);
-    } else if (appName.equals(ShowNotificationAction.APP_NAME)
-        && actionName.equals(ShowNotificationAction.ACTION_NAME)) {
-      return new ShowNotificationAction(actionParams);
-    } else if (appName.equals(ShowWebsiteAction.APP_NAME)
-        && actionName.equals(ShowWebsiteAction.ACTION_NAME)) {
-      return new ShowWebsiteAction(actionParams);
-    } else if (appName.equals(SetScreenBrightnessAction.APP_NAME)
-        && actionName.equals(SetScreenBrightnessAction.ACTION_NAME)) {
-      return new SetScreenBrightnessAction(actionParams);
-    } else if (appName.equals(SetPhoneLoudAction.APP_NAME)
-        && actionName.equals(SetPhoneLoudAction.ACTION_NAME)) {
-      return new SetPhoneLoudAction(actionParams);
-    } else if (appName.equals(SetPhoneSilentAction.APP_NAME)
-        && actionName.equals(SetPhoneSilentAction.ACTION_NAME)) {
-      return new SetPhoneSilentAction(actionParams);
-    } else if (appName.equals(SetPhoneVibrateAction.APP_NAME)
-        && actionName.equals(SetPhoneVibrateAction.ACTION_NAME)) {
-      return new SetPhoneVibrateAction(actionParams);
-    } else if (appName.equals(TurnOffWifiAction.APP_NAME)
-        && actionName.equals(TurnOffWifiAction.ACTION_NAME)) {
-      return new TurnOffWifiAction(actionParams);
-    } else if (appName.equals(TurnOnWifiAction.APP_NAME)
-        && actionName.equals(TurnOnWifiAction.ACTION_NAME)) {
-      return new TurnOnWifiAction(actionParams);
-    } else if (appName.equals(UpdateTwitterStatusAction.APP_NAME)
-        && actionName.equals(UpdateTwitterStatusAction.ACTION_NAME)) {
-      return new UpdateTwitterStatusAction(actionParams);
-    } else if (appName.equals(PowerOffAction.APP_NAME)
-            && actionName.equals(PowerOffAction.ACTION_NAME)) {
-        return new PowerOffAction(actionParams);
-    } else {
-      Log.d(TAG, "doesn't catch AppName is: " + appName + " and actionName is: " + actionName);
-      throw new OmnidroidException(120003, ExceptionMessageMap.getMessage(new Integer(120003)
-          .toString()));
-    }
-  }
-  
   /**
-   * This method returns an ArrayList of action ids which are to be executed for a given failed
+   * This method gives an ArrayList of the queued actions of a failure type whose retry is due. The
+   * next retry of each returned action is postponed as if it failed again, so it isn't picked up
+   * twice while it runs; its result reschedules it properly.
+   * 
+   * @param failureType
+   *          type of failure, use ResulProcessor RESULT_FAIULRE_types;
+   * @param now
+   *          the current time (in milliseconds)
+   * @return ArrayList of queued actions, matching failureType, that are due for a retry
    * 
-   * @param failedId
-   *          The failed Id
-   * @return ArrayList of Action Ids for actions to be executed
    * @throws IllegalStateException
    *           when this object is already closed
    */
-  private ArrayList<Long> getFailedActionIds(int failureType) {
-    if (!database.isOpen()) {
+  public ArrayList<Action> getDueActions(int failureType, long now) {
+    if (isClosed) {
       throw new IllegalStateException(TAG + " is already closed.");
     }
 
-    Cursor cursor = failedActionsDbAdapter.fetchAll(null, null, failureType);
-    ArrayList<Long> ruleActionIds = new ArrayList<Long>();
-    while (cursor.moveToNext()) {
-      ruleActionIds.add(getLongFromCursor(cursor, FailedActionsDbAdapter.KEY_FAILEDACTIONID));
-    }
+    HashMap<Long, Integer> attempts = new HashMap<Long, Integer>();
+    Cursor cursor = failedActionsDbAdapter.fetchAllWithDetails(failureType, now);
+    ArrayList<Action> actions = getActions(cursor, attempts);
     cursor.close();
-    return ruleActionIds;
+
+    for (Map.Entry<Long, Integer> entry : attempts.entrySet()) {
+      failedActionsDbAdapter.reschedule(entry.getKey(), null,
+          now + RetryScheduler.getRetryDelay(entry.getValue()));
+    }
+    return actions;
   }
 
   /**
-   * This method gives the registered action name and its application name for a failed action
-   * 
-   * @param failedActionId
-   *          The failed Action's Id
-   * @return String array {application name, action name}. Null if cannot find action name,
-   *         application name or action id
-   * @throws IllegalStateException
-   *           when this object is already closed
+   * @return whether any actions are waiting for a retry
    */
-  private String[] getRegisteredActionInfo(Long failedActionId) {
-    if (!database.isOpen()) {
-      throw new IllegalStateException(TAG + " is already closed.");
-    }
-
-    Long actionId;
-    Long appId;
-    String actionName;
-    String appName;
+  public boolean hasActions() {
+    return failedActionsDbAdapter.fetchEarliest(FailedActionsDbAdapter.KEY_TIMESTAMP, null)
+        != Long.MAX_VALUE;
+  }
 
-    Cursor cursor = failedActionsDbAdapter.fetch(failedActionId);
-    if (cursor.moveToFirst()) {
-      actionId = getLongFromCursor(cursor, FailedActionsDbAdapter.KEY_ACTIONID);
-      cursor.close();
-    } else {
-      cursor.close();
-      return null;
+  /**
+   * @return the earliest time (in milliseconds) a queued action needs attention, either because its
+   *         retry is due on a time tick or because it is too old and will be given up, or
+   *         {@link Long#MAX_VALUE} if there are no queued actions
+   */
+  public long getNextWakeup() {
+    long nextRetry = failedActionsDbAdapter.fetchEarliest(FailedActionsDbAdapter.KEY_NEXT_ATTEMPT,
+        ResultProcessor.RESULT_FAILURE_UNKNOWN);
+    long oldest = failedActionsDbAdapter.fetchEarliest(FailedActionsDbAdapter.KEY_TIMESTAMP, null);
+    if (oldest == Long.MAX_VALUE) {
+      return nextRetry;
     }
+    return Math.min(nextRetry, oldest + FailedActionsDbAdapter.MAX_AGE);
+  }
 
-    cursor = registeredActionDbAdapter.fetch(actionId);
-    if (cursor.moveToFirst()) {
-      actionName = getStringFromCursor(cursor, RegisteredActionDbAdapter.KEY_ACTIONNAME);
-      appId = getLongFromCursor(cursor, RegisteredActionDbAdapter.KEY_APPID);
-      cursor.close();
-    } else {
-      cursor.close();
-      return null;
+  /**
+   * Builds the actions from a cursor returned by
+   * {@link FailedActionsDbAdapter#fetchAllWithDetails(int, Long)}, which holds one row per
+   * parameter of each failed action.
+   * 
+   * @param cursor
+   *          the cursor to read
+   * @param attempts
+   *          receives the number of attempts of each failed action read, may be null
+   * @return the actions that could be built
+   */
+  private ArrayList<Action> getActions(Cursor cursor, HashMap<Long, Integer> attempts) {
+    ArrayList<Action> actions = new ArrayList<Action>();
+    if (!cursor.moveToFirst()) {
+      return actions;
     }
 
-    cursor = registeredAppDbAdapter.fetch(appId);
-    if (cursor.moveToFirst()) {
-      appName = getStringFromCursor(cursor, RegisteredAppDbAdapter.KEY_APPNAME);
-      cursor.close();
-    } else {
-      cursor.close();
-      return null;
-    }
+    int nameColumn = cursor.getColumnIndex(FailedActionParameterDbAdapter.KEY_ACTIONPARAMETERNAME);
+    int dataColumn = cursor
+        .getColumnIndex(FailedActionParameterDbAdapter.KEY_FAILEDACTIONPARAMETERDATA);
+    boolean hasNext = true;
+    while (hasNext) {
+      long failedActionId = getLongFromCursor(cursor, FailedActionsDbAdapter.KEY_FAILEDACTIONID);
+      String appName = getStringFromCursor(cursor, RegisteredAppDbAdapter.KEY_APPNAME);
+      String actionName = getStringFromCursor(cursor, RegisteredActionDbAdapter.KEY_ACTIONNAME);
+      String ruleName = getStringFromCursor(cursor, RuleDbAdapter.KEY_RULENAME);
+      boolean notification = getBooleanFromCursor(cursor, RuleDbAdapter.KEY_NOTIFICATION);
+      if (attempts != null) {
+        attempts.put(failedActionId, getIntFromCursor(cursor, FailedActionsDbAdapter.KEY_ATTEMPTS));
+      }
+
+      // Collect the parameters from the rows of this failed action
+      HashMap<String, String> actionParams = new HashMap<String, String>();
+      do {
+        if (!cursor.isNull(nameColumn)) {
+          actionParams.put(cursor.getString(nameColumn), cursor.getString(dataColumn));
+        }
+        hasNext = cursor.moveToNext();
+      } while (hasNext
+          && getLongFromCursor(cursor, FailedActionsDbAdapter.KEY_FAILEDACTIONID) == failedActionId);
 
-    return new String[] { appName, actionName };
+      try {
+        Action action = ActionRegistry.create(appName, actionName, actionParams);
+        action.setRuleName(ruleName);
+        action.setNotification(notification);
+        action.setDatabaseId(failedActionId);
+        action.setActionType(Action.FAILED_ACTION);
+        actions.add(action);
+      } catch (OmnidroidException e) {
+        Logger.w(TAG, e.toString(), e);
+        Logger.w(TAG, e.getLocalizedMessage());
+      }
+    }
+    return actions;
   }
+
   public boolean delete(long failedActionId) {
-    return failedActionParameterDbAdapter.delete(failedActionId) && 
+    boolean deleted = failedActionParameterDbAdapter.delete(failedActionId) && 
         failedActionsDbAdapter.delete(failedActionId);
+    refreshIfEmpty();
+    return deleted;
   }
   
   public long insert (Intent intent, int failureType, String message ) {
@@ -327,7 +247,14 @@ public class FailedActionsDbHelper {
     Cursor cursor = ruleActionDbAdapter.fetch(ruleActionId);
     long ruleId = getLongFromCursor(cursor, RuleActionDbAdapter.KEY_RULEID);
     long actionId = getLongFromCursor(cursor, RuleActionDbAdapter.KEY_ACTIONID);
-    long failedActionId = failedActionsDbAdapter.insert(ruleId, actionId, failureType, message);
+    long now = System.currentTimeMillis();
+    long nextAttempt = now + RetryScheduler.getRetryDelay(1);
+    long failedActionId = failedActionsDbAdapter.insert(ruleId, actionId, failureType, message,
+        nextAttempt);
+    RetryScheduler.wakeupAt((failureType == ResultProcessor.RESULT_FAILURE_UNKNOWN) ? nextAttempt
+        : now + FailedActionsDbAdapter.MAX_AGE);
+    // Make sure the monitors whose events trigger retries are running
+    EventMonitoringService.refresh(context);
     
     Logger.w(TAG, "inserting action into database, failure type "+ failureType);
     
@@ -335,7 +262,8 @@ public class FailedActionsDbHelper {
     
     for (String paramName : params.keySet()) {
       if (!paramName.equals(Action.DATABASE_ID) && !paramName.equals(Action.ACTION_TYPE) &&
-          !paramName.equals(Action.NOTIFICATION)) {
+          !paramName.equals(Action.NOTIFICATION) && !paramName.equals(CausalChain.EXTRA_CHAIN_ID)
+          && !paramName.equals(CausalChain.EXTRA_CHAIN_DEPTH)) {
         failedActionParameterDbAdapter.insert(failedActionId, paramName, 
             params.getString(paramName));
       }
@@ -344,8 +272,19 @@ public class FailedActionsDbHelper {
   }
 
   public boolean deleteAll () {
-    return failedActionParameterDbAdapter.deleteAll() &&
+    boolean deleted = failedActionParameterDbAdapter.deleteAll() &&
         failedActionsDbAdapter.deleteAll();
+    refreshIfEmpty();
+    return deleted;
+  }
+
+  /**
+   * Let the monitors that only run while retries are pending stop once the queue has drained.
+   */
+  private void refreshIfEmpty() {
+    if (!hasActions()) {
+      EventMonitoringService.refresh(context);
+    }
   }
   /**
    * updates failureType with new result;
@@ -358,23 +297,39 @@ public class FailedActionsDbHelper {
    * @param message 
    */
   public void update(Intent intent, int result, String message)  {
-      failedActionsDbAdapter.update(intent.getLongExtra(Action.DATABASE_ID, -1), 
-          null, null, result, message);
+      long failedActionId = intent.getLongExtra(Action.DATABASE_ID, -1);
+      failedActionsDbAdapter.update(failedActionId, null, null, result, message);
+
+      // Back off before the next retry
+      Cursor cursor = failedActionsDbAdapter.fetch(failedActionId);
+      if (cursor.getCount() > 0) {
+        int attempts = getIntFromCursor(cursor, FailedActionsDbAdapter.KEY_ATTEMPTS) + 1;
+        long nextAttempt = System.currentTimeMillis() + RetryScheduler.getRetryDelay(attempts);
+        failedActionsDbAdapter.reschedule(failedActionId, attempts, nextAttempt);
+        if (result == ResultProcessor.RESULT_FAILURE_UNKNOWN) {
+          RetryScheduler.wakeupAt(nextAttempt);
+        }
+      }
+      cursor.close();
   }
   /**
    * 
    */
   public void deleteOldActions() {
-    if (!database.isOpen()) {
+    if (isClosed) {
       throw new IllegalStateException(TAG + " is already closed.");
     }
 
     Cursor cursor = failedActionsDbAdapter.fetchOldActions();
+    boolean deleted = cursor.getCount() > 0;
     while (cursor.moveToNext()) {
       UtilUI.showNotification(context, UtilUI.NOTIFICATION_RULE, context.getString(R.string.libretasks), getStringFromCursor(cursor, FailedActionsDbAdapter.KEY_MESSAGE));
       failedActionsDbAdapter.delete(getLongFromCursor(cursor, 
           FailedActionsDbAdapter.KEY_FAILEDACTIONID));
     }
     cursor.close();
+    if (deleted) {
+      refreshIfEmpty();
+    }
   }
 }
@@ -0,0 +1,118 @@
+/*  
+ * Copyright (c) 2016  LibreTasks - https://github.com/biotinker/LibreTasks  
+ *  
+ *  This file is free software: you may copy, redistribute and/or modify it  
+ *  under the terms of the GNU General Public License as published by the  
+ *  Free Software Foundation, either version 3 of the License, or (at your  
+ *  option) any later version.  
+ *  
+ *  This file is distributed in the hope that it will be useful, but  
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of  
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU  
+ *  General Public License for more details.  
+ *  
+ *  You should have received a copy of the GNU General Public License  
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package libretasks.app.model;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import libretasks.app.view.simple.model.ModelLog;
+
+/**
+ * Pages through one or more types of logs, newest first. Each type is read a page at a time from
+ * where the previous page left off (keyset pagination on timestamp and id, see
+ * {@link UIDbHelper#getLogPage(int, long, long, int)}) and the types are merged by timestamp, so
+ * the cost of a page doesn't depend on how many logs are stored.
+ */
+public class LogPager {
+  private final UIDbHelper db;
+  private final Source[] sources;
+
+  /**
+   * The logs of one type that have been read but not returned yet.
+   */
+  private static class Source {
+    final int type;
+    final LinkedList<ModelLog> logs = new LinkedList<ModelLog>();
+    boolean exhausted;
+
+    /** Key of the last log read */
+    long timestamp = Long.MAX_VALUE;
+    long id = Long.MAX_VALUE;
+
+    Source(int type) {
+      this.type = type;
+    }
+  }
+
+  /**
+   * @param db
+   *          the database helper to read the logs with
+   * @param types
+   *          the types of logs to page through, {@code ModelLog.TYPE_*} constants
+   */
+  public LogPager(UIDbHelper db, int... types) {
+    this.db = db;
+    sources = new Source[types.length];
+    for (int i = 0; i < types.length; i++) {
+      sources[i] = new Source(types[i]);
+    }
+  }
+
+  /**
+   * Read the next page. Safe to call from a background thread.
+   * 
+   * @param size
+   *          the maximum number of logs to return
+   * @return the next logs, newest first; fewer than {@code size} only if there are no more logs
+   */
+  public synchronized List<ModelLog> nextPage(int size) {
+    ArrayList<ModelLog> page = new ArrayList<ModelLog>(size);
+    while (page.size() < size) {
+      Source newest = null;
+      for (Source source : sources) {
+        if (source.logs.isEmpty() && !source.exhausted) {
+          read(source, size);
+        }
+        if (!source.logs.isEmpty()
+            && (newest == null || source.logs.getFirst().compareTo(newest.logs.getFirst()) < 0)) {
+          newest = source;
+        }
+      }
+      if (newest == null) {
+        break;
+      }
+      page.add(newest.logs.removeFirst());
+    }
+    return page;
+  }
+
+  /**
+   * @return whether {@link #nextPage(int)} may return more logs
+   */
+  public synchronized boolean hasMore() {
+    for (Source source : sources) {
+      if (!source.exhausted || !source.logs.isEmpty()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private void read(Source source, int size) {
+    List<ModelLog> logs = db.getLogPage(source.type, source.timestamp, source.id, size);
+    if (logs.size() < size) {
+      source.exhausted = true;
+    }
+    if (!logs.isEmpty()) {
+      ModelLog last = logs.get(logs.size() - 1);
+      source.timestamp = last.getTimestamp();
+      source.id = last.getDatabaseId();
+      source.logs.addAll(logs);
+    }
+  }
+}
@@ -0,0 +1,288 @@
+/*  
+ * Copyright (c) 2016  LibreTasks - https://github.com/biotinker/LibreTasks  
+ *  
+ *  This file is free software: you may copy, redistribute and/or modify it  
+ *  under the terms of the GNU General Public License as published by the  
+ *  Free Software Foundation, either version 3 of the License, or (at your  
+ *  option) any later version.  
+ *  
+ *  This file is distributed in the hope that it will be useful, but  
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of  
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU  
+ *  General Public License for more details.  
+ *  
+ *  You should have received a copy of the GNU General Public License  
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package libretasks.app.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.content.Context;
+import android.database.SQLException;
+import android.database.sqlite.SQLiteDatabase;
+import libretasks.app.controller.EngineConfig;
+import libretasks.app.controller.util.Logger;
+import libretasks.app.model.db.DbHelper;
+import libretasks.app.model.db.LogActionDbAdapter;
+import libretasks.app.model.db.LogDbAdapter;
+import libretasks.app.model.db.LogGeneralDbAdapter;
+
+/**
+ * Write-behind sink for {@link EventLog}, {@link ActionLog} and {@link GeneralLog} records. Logs
+ * are queued without blocking the caller and written on a single background thread in batched
+ * transactions, either once {@link #FLUSH_BATCH_SIZE} logs are waiting or {@link #FLUSH_DELAY}
+ * after the first one was queued. Event logs go to the {@link EventJournal} instead of the DB.
+ * Removing logs past the user's log limit runs as a separate
+ * periodic task instead of on every insert.
+ */
+public class LogWriter {
+  private static final String TAG = LogWriter.class.getSimpleName();
+
+  /** Number of queued logs that triggers an immediate flush. */
+  private static final int FLUSH_BATCH_SIZE = 32;
+
+  /** Longest time (in milliseconds) a queued log waits before it is written. */
+  private static final long FLUSH_DELAY = 2000;
+
+  /** Time (in milliseconds) between two runs of the log retention task. */
+  private static final long RETENTION_INTERVAL = LogDbAdapter.TIME_IN_HOUR;
+
+  /** Number of flushes in a row that may fail before the logs they hold are dropped. */
+  private static final int MAX_FAILED_FLUSHES = 3;
+
+  /** The one and only LogWriter instance. */
+  private static LogWriter instance;
+
+  private final Context context;
+  private final ConcurrentLinkedQueue<Log> queue = new ConcurrentLinkedQueue<Log>();
+  private final AtomicInteger queueSize = new AtomicInteger();
+  private final AtomicBoolean flushScheduled = new AtomicBoolean();
+
+  /** Number of flushes in a row whose transaction was rolled back, only used by the executor. */
+  private int failedFlushes;
+
+  /** Single worker thread, so flushes and retention never run concurrently. */
+  private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+
+  private final Runnable flushTask = new Runnable() {
+    public void run() {
+      flushScheduled.set(false);
+      writeQueuedLogs();
+    }
+  };
+
+  private final Runnable retentionTask = new Runnable() {
+    public void run() {
+      try {
+        deleteOldLogs();
+      } catch (RuntimeException e) {
+        // Don't let a failed run cancel the following ones
+        Logger.w(TAG, "Unable to remove old logs", e);
+      }
+    }
+  };
+
+  private LogWriter(Context context) {
+    this.context = context;
+    // Open and recover the journal here rather than on the first caller's thread
+    executor.execute(new Runnable() {
+      public void run() {
+        EventJournal.instance(LogWriter.this.context);
+      }
+    });
+    executor.scheduleWithFixedDelay(retentionTask, 0, RETENTION_INTERVAL, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @param context
+   *          context for the application database resource
+   * @return the process wide log writer, created on first use
+   */
+  public static synchronized LogWriter instance(Context context) {
+    if (instance == null) {
+      instance = new LogWriter(context.getApplicationContext());
+    }
+    return instance;
+  }
+
+  /**
+   * Queue a log to be written to the DB. The log is timestamped now, its ID is set once it has been
+   * written.
+   * 
+   * @param log
+   *          the log to store
+   */
+  public void write(Log log) {
+    if (log == null) {
+      throw new IllegalArgumentException("no log specified.");
+    }
+    log.setTimestamp(System.currentTimeMillis());
+    queue.offer(log);
+
+    if (queueSize.incrementAndGet() >= FLUSH_BATCH_SIZE) {
+      executor.execute(flushTask);
+    } else if (flushScheduled.compareAndSet(false, true)) {
+      executor.schedule(flushTask, FLUSH_DELAY, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Write all queued logs as soon as possible without waiting for the flush delay.
+   */
+  public void flush() {
+    executor.execute(flushTask);
+  }
+
+  /**
+   * Remove the logs past the user's log limits right away instead of with the next periodic run,
+   * e.g. after the limits were lowered.
+   */
+  public void deleteOldLogsNow() {
+    executor.execute(retentionTask);
+  }
+
+  /**
+   * Run a task on the log writer's thread, after the logs queued so far have been written if a
+   * flush is already due.
+   * 
+   * @param task
+   *          the task to run, typically one that reads the {@link EventJournal}
+   */
+  public void execute(Runnable task) {
+    executor.execute(task);
+  }
+
+  /**
+   * Drain the queue, event logs into the {@link EventJournal} and all others into the DB within a
+   * single transaction. The DB is only opened if there is something to write to it. Logs are
+   * written in the order they were queued, so an {@link EventLog} always has its ID before the
+   * {@link ActionLog}s it caused are written. If the transaction fails, its logs are queued again,
+   * see {@link #requeue(List, SQLException)}.
+   */
+  private void writeQueuedLogs() {
+    if (queue.isEmpty()) {
+      return;
+    }
+
+    EventJournal journal = EventJournal.instance(context);
+    int logSizeLimit = EngineConfig.get(context).getLogSizeLimit();
+    boolean eventsAppended = false;
+    SQLiteDatabase database = null;
+    LogActionDbAdapter logActionDbAdapter = null;
+    LogGeneralDbAdapter logGeneralDbAdapter = null;
+
+    ArrayList<Log> written = new ArrayList<Log>();
+    SQLException failure = null;
+    try {
+      Log log;
+      while ((log = queue.poll()) != null) {
+        queueSize.decrementAndGet();
+        if (log instanceof EventLog) {
+          journal.append((EventLog) log);
+          eventsAppended = true;
+          continue;
+        }
+        // Kept until the transaction commits, a failure rolls the log back along with the others
+        written.add(log);
+        if (database == null) {
+          database = DbHelper.acquire(context);
+          logActionDbAdapter = new LogActionDbAdapter(database);
+          logGeneralDbAdapter = new LogGeneralDbAdapter(database);
+          database.beginTransaction();
+        }
+        try {
+          LogDbAdapter logDbAdapter = (log instanceof ActionLog) ? logActionDbAdapter
+              : logGeneralDbAdapter;
+          long id = logDbAdapter.insert(log);
+          log.setID(id);
+          if (logSizeLimit > 0 && id > logSizeLimit) {
+            // Kept as a ring, the new entry replaces the oldest one
+            logDbAdapter.delete(id - logSizeLimit);
+          }
+        } catch (IllegalArgumentException e) {
+          // A log with missing fields must not roll back the rest of the batch
+          written.remove(written.size() - 1);
+          Logger.w(TAG, "Dropping invalid log: " + log, e);
+        }
+      }
+      if (database != null) {
+        database.setTransactionSuccessful();
+      }
+      if (eventsAppended) {
+        journal.setSizeLimit(logSizeLimit);
+      }
+    } catch (SQLException e) {
+      failure = e;
+    } finally {
+      if (database != null) {
+        try {
+          // Commits, unless an insert failed
+          database.endTransaction();
+        } catch (SQLException e) {
+          failure = e;
+        }
+        DbHelper.release();
+      }
+    }
+
+    if (failure != null) {
+      requeue(written, failure);
+    } else {
+      failedFlushes = 0;
+    }
+  }
+
+  /**
+   * Queue the logs of a rolled back transaction to be written again with a later flush. After
+   * {@link #MAX_FAILED_FLUSHES} failed flushes in a row they are dropped instead, so a database
+   * that can't be written doesn't make the queue grow without bounds.
+   * 
+   * @param logs
+   *          the logs that were rolled back
+   * @param e
+   *          the cause of the rollback
+   */
+  private void requeue(List<Log> logs, SQLException e) {
+    for (Log log : logs) {
+      // The ID assigned by the rolled back insert is not valid
+      log.setID(-1);
+    }
+    failedFlushes++;
+    if (failedFlushes >= MAX_FAILED_FLUSHES) {
+      Logger.w(TAG, "Dropping " + logs.size() + " log(s) after " + failedFlushes
+          + " failed writes", e);
+      failedFlushes = 0;
+      return;
+    }
+
+    Logger.w(TAG, "Unable to write " + logs.size() + " log(s), retrying", e);
+    for (Log log : logs) {
+      queue.offer(log);
+      queueSize.incrementAndGet();
+    }
+    if (flushScheduled.compareAndSet(false, true)) {
+      executor.schedule(flushTask, FLUSH_DELAY, TimeUnit.MILLISECONDS);
+    }
+  }
+
+  /**
+   * Remove event, action and general logs older than the user's log limit, or beyond the log size
+   * limit if there is one.
+   */
+  private void deleteOldLogs() {
+    CoreLogsDbHelper[] logHelpers = { new CoreEventLogsDbHelper(context),
+        new CoreActionLogsDbHelper(context), new CoreGeneralLogsDbHelper(context) };
+    for (CoreLogsDbHelper logHelper : logHelpers) {
+      logHelper.deleteOldLogs();
+      logHelper.close();
+    }
+  }
+}
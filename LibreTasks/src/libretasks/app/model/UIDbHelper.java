@@ -38,8 +38,6 @@ import static libretasks.app.model.CursorHelper.getLongFromCursor;
 import static libretasks.app.model.CursorHelper.getStringFromCursor;
 
 import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -52,15 +50,18 @@ import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.util.Log;
 import libretasks.app.R;
+import libretasks.app.controller.AttributeDemand;
+import libretasks.app.controller.EventFilter;
+import libretasks.app.controller.HandlerService;
 import libretasks.app.controller.datatypes.DataType;
 import libretasks.app.controller.datatypes.FactoryDataType;
+import libretasks.app.controller.external.attributes.EventMonitoringService;
 import libretasks.app.model.db.DataFilterDbAdapter;
 import libretasks.app.model.db.DataTypeDbAdapter;
 import libretasks.app.model.db.DbHelper;
 import libretasks.app.model.db.LogActionDbAdapter;
 import libretasks.app.model.db.LogDbAdapter;
 import libretasks.app.model.db.LogGeneralDbAdapter;
-import libretasks.app.model.db.LogEventDbAdapter;
 import libretasks.app.model.db.RegisteredActionDbAdapter;
 import libretasks.app.model.db.RegisteredActionParameterDbAdapter;
 import libretasks.app.model.db.RegisteredAppDbAdapter;
@@ -92,6 +93,7 @@ public class UIDbHelper {
   private static final String TAG = UIDbHelper.class.getSimpleName();
 
   // Database management
+  private Context context;
   private DbHelper dbHelper;
   private SQLiteDatabase database;
 
@@ -107,7 +109,6 @@ public class UIDbHelper {
   private RuleActionDbAdapter ruleActionDbAdapter;
   private RuleActionParameterDbAdapter ruleActionParameterDbAdapter;
   private RuleDbAdapter ruleDbAdapter;
-  private LogEventDbAdapter logEventDbAdapter;
   private LogActionDbAdapter logActionDbAdapter;
   private LogGeneralDbAdapter logGeneralDbAdapter;
 
@@ -133,11 +134,46 @@ public class UIDbHelper {
    */
   public void resetDB() {
     dbHelper.cleanup(database);
+    clearEventJournal(null);
+    rulesChanged();
+  }
+
+  /**
+   * Clear the event journal on the {@link LogWriter} thread, after the logs queued so far have been
+   * written, so neither opening the journal nor its pending appends hold up the caller.
+   * 
+   * @param onCleared
+   *          run on the log writer thread once the journal is cleared, or null
+   */
+  private void clearEventJournal(final Runnable onCleared) {
+    LogWriter logWriter = LogWriter.instance(context);
+    logWriter.flush();
+    logWriter.execute(new Runnable() {
+      public void run() {
+        EventJournal.instance(context).clear();
+        if (onCleared != null) {
+          onCleared.run();
+        }
+      }
+    });
+  }
+
+  /**
+   * Drop everything compiled from the rules and let the event monitors adapt, must be called after
+   * any change to the rules.
+   */
+  private void rulesChanged() {
+    AttributeDemand.invalidate();
+    EventFilter.invalidate();
+    ActionParameterTemplate.invalidate();
+    HandlerService.rulesChanged();
+    EventMonitoringService.refresh(context);
   }
 
   public UIDbHelper(Context context) {
+    this.context = context;
     dbHelper = new DbHelper(context);
-    database = dbHelper.getWritableDatabase();
+    database = DbHelper.acquire(context);
 
     // Initialize db adapters
     dataTypeDbAdapter = new DataTypeDbAdapter(database);
@@ -151,7 +187,6 @@ public class UIDbHelper {
     ruleActionDbAdapter = new RuleActionDbAdapter(database);
     ruleActionParameterDbAdapter = new RuleActionParameterDbAdapter(database);
     ruleDbAdapter = new RuleDbAdapter(database);
-    logEventDbAdapter = new LogEventDbAdapter(database);
     logActionDbAdapter = new LogActionDbAdapter(database);
     logGeneralDbAdapter = new LogGeneralDbAdapter(database);
 
@@ -175,9 +210,11 @@ public class UIDbHelper {
    * connection. UIDbHelper is not usable after calling this method.
    */
   public void close() {
+    if (isClosed) {
+      return;
+    }
     isClosed = true;
-    dbHelper.close();
-    database.close();
+    DbHelper.release();
   }
 
   /**
@@ -769,6 +806,7 @@ public class UIDbHelper {
       saveFilterRuleNode(ruleID, -1, filterNode);
     }
 
+    rulesChanged();
     return ruleID;
   }
 
@@ -834,6 +872,8 @@ public class UIDbHelper {
       ruleFilterDbAdapter.delete(ruleFilterID);
     }
     cursorFilter.close();
+
+    rulesChanged();
   }
 
   /**
@@ -866,6 +906,7 @@ public class UIDbHelper {
    */
   public void setRuleEnabled(long ruleID, boolean enabled) {
     ruleDbAdapter.update(ruleID, null, null, null, enabled, null);
+    rulesChanged();
   }
 
   public List<ModelLog> getEventLogs() {
@@ -873,31 +914,14 @@ public class UIDbHelper {
       throw new IllegalStateException(TAG + " is closed.");
     }
 
-    Cursor cursor = logEventDbAdapter.fetchAll();
-    ArrayList<ModelLog> logList = new ArrayList<ModelLog>(cursor.getCount());
-
-    while (cursor.moveToNext()) {
-      Long logID = getLongFromCursor(cursor, LogDbAdapter.KEY_ID);
-      Long logTimestamp = getLongFromCursor(cursor, LogDbAdapter.KEY_TIMESTAMP);
-      String logName = getStringFromCursor(cursor, LogEventDbAdapter.KEY_EVENTNAME);
-      String logDesc = getStringFromCursor(cursor, LogDbAdapter.KEY_DESCRIPTION);
-      logList.add(new ModelLog(logID, logName, logDesc, R.drawable.icon_event_unknown,
-          logTimestamp, ModelLog.TYPE_EVENT));
+    List<EventLog> eventLogs = EventJournal.instance(context).query(0, Long.MAX_VALUE);
+    ArrayList<ModelLog> logList = new ArrayList<ModelLog>(eventLogs.size());
+    for (EventLog eventLog : eventLogs) {
+      logList.add(toModelLog(eventLog));
     }
-
-    cursor.close();
     return logList;
   }
 
-  public Cursor getEventLogsCursor() {
-    if (isClosed) {
-      throw new IllegalStateException(TAG + " is closed.");
-    }
-
-    Cursor cursor = logEventDbAdapter.fetchAll();
-    return cursor;
-  }
-
   /**
    * @return the sharedPreferences to allow for get/setting of user preferences.
    */
@@ -905,37 +929,32 @@ public class UIDbHelper {
     return settings;
   }
 
-  public Cursor getEventLogCursor(long eventID) {
+  public ModelLog getEventLog(long eventID) {
     if (isClosed) {
       throw new IllegalStateException(TAG + " is closed.");
     }
 
-    Cursor cursor = logEventDbAdapter.fetch(eventID);
-    return cursor;
+    EventLog eventLog = EventJournal.instance(context).get(eventID);
+    return eventLog == null ? null : toModelLog(eventLog);
   }
 
-  public ModelLog getEventLog(long eventID) {
-    if (isClosed) {
-      throw new IllegalStateException(TAG + " is closed.");
-    }
-
-    Cursor cursor = logEventDbAdapter.fetch(eventID);
-    long logID = getLongFromCursor(cursor, LogDbAdapter.KEY_ID);
-    String logName = getStringFromCursor(cursor, LogEventDbAdapter.KEY_EVENTNAME);
-    long logTimestamp = getLongFromCursor(cursor, LogDbAdapter.KEY_TIMESTAMP);
-    String logDesc = getStringFromCursor(cursor, LogDbAdapter.KEY_DESCRIPTION);
-    ModelLog log = new ModelLog(logID, logName, logDesc, R.drawable.icon_event_unknown,
-        logTimestamp, ModelLog.TYPE_EVENT);
-    cursor.close();
-    return log;
+  private static ModelLog toModelLog(EventLog eventLog) {
+    return new ModelLog(eventLog.getID(), eventLog.getEventName(), eventLog.getText(),
+        R.drawable.icon_event_unknown, eventLog.getTimestamp(), ModelLog.TYPE_EVENT);
   }
 
-  public void deleteEventLogs() {
+  /**
+   * Remove all event logs in the background, see {@link #clearEventJournal(Runnable)}.
+   * 
+   * @param onCleared
+   *          run on the log writer thread once the logs are removed, or null
+   */
+  public void deleteEventLogs(Runnable onCleared) {
     if (isClosed) {
       throw new IllegalStateException(TAG + " is closed.");
     }
 
-    logEventDbAdapter.deleteAll();
+    clearEventJournal(onCleared);
   }
 
   public void deleteActionLogs() {
@@ -951,33 +970,34 @@ public class UIDbHelper {
       throw new IllegalStateException(TAG + " is closed.");
     }
 
-    Cursor cursor = logActionDbAdapter.fetchAll();
-    ArrayList<ModelLog> logList = new ArrayList<ModelLog>(cursor.getCount());
+    return getActionLogs(logActionDbAdapter.fetchAll());
+  }
 
+  private static List<ModelLog> getActionLogs(Cursor cursor) {
+    ArrayList<ModelLog> logList = new ArrayList<ModelLog>(cursor.getCount());
     while (cursor.moveToNext()) {
-      long logID = getLongFromCursor(cursor, LogDbAdapter.KEY_ID);
-      String logName = getStringFromCursor(cursor, LogActionDbAdapter.KEY_ACTIONEVENTNAME);
-      long logTimestamp = getLongFromCursor(cursor, LogDbAdapter.KEY_TIMESTAMP);
-      String logDesc = getStringFromCursor(cursor, LogDbAdapter.KEY_DESCRIPTION);
-      logList.add(new ModelLog(logID, logName, logDesc, R.drawable.icon_action_unknown,
-          logTimestamp, ModelLog.TYPE_ACTION));
+      logList.add(getActionLog(cursor));
     }
     cursor.close();
     return logList;
   }
 
+  private static ModelLog getActionLog(Cursor cursor) {
+    long logID = getLongFromCursor(cursor, LogDbAdapter.KEY_ID);
+    String logName = getStringFromCursor(cursor, LogActionDbAdapter.KEY_ACTIONEVENTNAME);
+    long logTimestamp = getLongFromCursor(cursor, LogDbAdapter.KEY_TIMESTAMP);
+    String logDesc = getStringFromCursor(cursor, LogDbAdapter.KEY_DESCRIPTION);
+    return new ModelLog(logID, logName, logDesc, R.drawable.icon_action_unknown, logTimestamp,
+        ModelLog.TYPE_ACTION);
+  }
+
   public ModelLog getActionLog(long id) {
     if (isClosed) {
       throw new IllegalStateException(TAG + " is closed.");
     }
 
     Cursor cursor = logActionDbAdapter.fetch(id);
-    long logID = getLongFromCursor(cursor, LogDbAdapter.KEY_ID);
-    String logName = getStringFromCursor(cursor, LogActionDbAdapter.KEY_ACTIONEVENTNAME);
-    long logTimestamp = getLongFromCursor(cursor, LogDbAdapter.KEY_TIMESTAMP);
-    String logDesc = getStringFromCursor(cursor, LogDbAdapter.KEY_DESCRIPTION);
-    ModelLog log = new ModelLog(logID, logName, logDesc, R.drawable.icon_action_unknown,
-        logTimestamp, ModelLog.TYPE_ACTION);
+    ModelLog log = getActionLog(cursor);
     cursor.close();
     return log;
   }
@@ -987,33 +1007,34 @@ public class UIDbHelper {
       throw new IllegalStateException(TAG + " is closed.");
     }
 
-    Cursor cursor = logGeneralDbAdapter.fetchAll();
-    ArrayList<ModelLog> logList = new ArrayList<ModelLog>(cursor.getCount());
+    return getGeneralLogs(logGeneralDbAdapter.fetchAll());
+  }
 
+  private static List<ModelLog> getGeneralLogs(Cursor cursor) {
+    ArrayList<ModelLog> logList = new ArrayList<ModelLog>(cursor.getCount());
     while (cursor.moveToNext()) {
-      long logID = getLongFromCursor(cursor, LogDbAdapter.KEY_ID);
-      String logName = getStringFromCursor(cursor, LogGeneralDbAdapter.KEY_DESCRIPTION);
-      long logTimestamp = getLongFromCursor(cursor, LogDbAdapter.KEY_TIMESTAMP);
-      String logDesc = getStringFromCursor(cursor, LogDbAdapter.KEY_DESCRIPTION);
-      logList.add(new ModelLog(logID, logName, logDesc, R.drawable.icon_log_general, logTimestamp,
-          ModelLog.TYPE_GENERAL));
+      logList.add(getGeneralLog(cursor));
     }
     cursor.close();
     return logList;
   }
 
+  private static ModelLog getGeneralLog(Cursor cursor) {
+    long logID = getLongFromCursor(cursor, LogDbAdapter.KEY_ID);
+    String logName = getStringFromCursor(cursor, LogGeneralDbAdapter.KEY_DESCRIPTION);
+    long logTimestamp = getLongFromCursor(cursor, LogDbAdapter.KEY_TIMESTAMP);
+    String logDesc = getStringFromCursor(cursor, LogDbAdapter.KEY_DESCRIPTION);
+    return new ModelLog(logID, logName, logDesc, R.drawable.icon_log_general, logTimestamp,
+        ModelLog.TYPE_GENERAL);
+  }
+
   public ModelLog getGeneralLog(long id) {
     if (isClosed) {
       throw new IllegalStateException(TAG + " is closed.");
     }
 
     Cursor cursor = logGeneralDbAdapter.fetch(id);
-    long logID = getLongFromCursor(cursor, LogDbAdapter.KEY_ID);
-    String logName = getStringFromCursor(cursor, LogGeneralDbAdapter.KEY_DESCRIPTION);
-    long logTimestamp = getLongFromCursor(cursor, LogDbAdapter.KEY_TIMESTAMP);
-    String logDesc = getStringFromCursor(cursor, LogDbAdapter.KEY_DESCRIPTION);
-    ModelLog log = new ModelLog(logID, logName, logDesc, R.drawable.icon_log_general, logTimestamp,
-        ModelLog.TYPE_GENERAL);
+    ModelLog log = getGeneralLog(cursor);
     cursor.close();
     return log;
   }
@@ -1026,18 +1047,41 @@ public class UIDbHelper {
     logGeneralDbAdapter.deleteAll();
   }
 
-  public List<ModelLog> getAllLogs() {
-    ArrayList<ModelLog> logs = new ArrayList<ModelLog>();
-    logs.addAll(getGeneralLogs());
-    logs.addAll(getEventLogs());
-    logs.addAll(getActionLogs());
-    Collections.sort(logs, new Comparator<ModelLog>() {
-      public int compare(ModelLog o1, ModelLog o2) {
-        return o1.compareTo(o2);
-      }
-    });
+  /**
+   * Get a page of logs of one type, newest first, that follows the log with the given key. See
+   * {@link LogPager} for paging through several types at once.
+   * 
+   * @param type
+   *          the type of log, one of the {@code ModelLog.TYPE_*} constants
+   * @param timestamp
+   *          timestamp of the last log of the previous page, or {@link Long#MAX_VALUE}
+   * @param id
+   *          database id of the last log of the previous page, or {@link Long#MAX_VALUE}
+   * @param limit
+   *          the maximum number of logs to return
+   * @return the logs older than the given key, newest first
+   * @throws IllegalStateException
+   *           when database is closed
+   */
+  public List<ModelLog> getLogPage(int type, long timestamp, long id, int limit) {
+    if (isClosed) {
+      throw new IllegalStateException(TAG + " is closed.");
+    }
 
-    return logs;
+    if (type == ModelLog.TYPE_EVENT) {
+      List<EventLog> eventLogs = EventJournal.instance(context).queryBefore(timestamp, id, limit);
+      ArrayList<ModelLog> logList = new ArrayList<ModelLog>(eventLogs.size());
+      for (EventLog eventLog : eventLogs) {
+        logList.add(toModelLog(eventLog));
+      }
+      return logList;
+    } else if (type == ModelLog.TYPE_ACTION) {
+      return getActionLogs(logActionDbAdapter.fetchPage(timestamp, id, limit));
+    } else if (type == ModelLog.TYPE_GENERAL) {
+      return getGeneralLogs(logGeneralDbAdapter.fetchPage(timestamp, id, limit));
+    } else {
+      return new ArrayList<ModelLog>();
+    }
   }
 
   public ModelLog getLog(int type, long id) {
@@ -1052,14 +1096,21 @@ public class UIDbHelper {
     }
   }
 
-  public void deleteAllLogs() {
+  /**
+   * Remove all logs. The action and general logs are removed right away, the event logs in the
+   * background, see {@link #clearEventJournal(Runnable)}.
+   * 
+   * @param onCleared
+   *          run on the log writer thread once the event logs are removed, or null
+   */
+  public void deleteAllLogs(Runnable onCleared) {
     if (isClosed) {
       throw new IllegalStateException(TAG + " is closed.");
     }
 
-    logEventDbAdapter.deleteAll();
     logActionDbAdapter.deleteAll();
     logGeneralDbAdapter.deleteAll();
+    clearEventJournal(onCleared);
   }
 
   /**
@@ -33,13 +33,25 @@
  *******************************************************************************/
 package libretasks.app.model.db;
 
+import java.util.HashMap;
+
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 
 /**
  * A generic class of all database adapter of Omnidroid.
+ * <p>
+ * Adapters run their frequent statements through {@link #getStatement(String)}, which compiles
+ * each SQL text once per database connection. Values are bound to {@code ?} placeholders instead
+ * of being concatenated into the SQL, so the text (and with it the compiled statement) stays the
+ * same between calls.
  */
 public class DbAdapter {
 
+  /** Compiled statements of each open database, by SQL text. */
+  private static final HashMap<SQLiteDatabase, HashMap<String, SQLiteStatement>> statements =
+      new HashMap<SQLiteDatabase, HashMap<String, SQLiteStatement>>();
+
   protected SQLiteDatabase database;
 
   /**
@@ -52,4 +64,65 @@ public class DbAdapter {
     this.database = database;
   }
 
+  /**
+   * Get the compiled statement for {@code sql}, compiling it on first use. The statement is shared
+   * by all adapters of this database, so callers must hold its lock from binding the arguments
+   * until it has been executed.
+   * 
+   * @param sql
+   *          the SQL text with {@code ?} placeholders for all values
+   * @return the compiled statement
+   */
+  protected SQLiteStatement getStatement(String sql) {
+    synchronized (statements) {
+      HashMap<String, SQLiteStatement> cache = statements.get(database);
+      if (cache == null) {
+        cache = new HashMap<String, SQLiteStatement>();
+        statements.put(database, cache);
+      }
+      SQLiteStatement statement = cache.get(sql);
+      if (statement == null) {
+        statement = database.compileStatement(sql);
+        cache.put(sql, statement);
+      }
+      return statement;
+    }
+  }
+
+  /**
+   * Close the statements compiled for a database. Must be called before the database is closed.
+   * 
+   * @param database
+   *          the database that is about to be closed
+   */
+  public static void closeStatements(SQLiteDatabase database) {
+    HashMap<String, SQLiteStatement> cache;
+    synchronized (statements) {
+      cache = statements.remove(database);
+    }
+    if (cache != null) {
+      for (SQLiteStatement statement : cache.values()) {
+        statement.close();
+      }
+    }
+  }
+
+  /**
+   * Bind a string that may be null.
+   */
+  protected static void bindString(SQLiteStatement statement, int index, String value) {
+    if (value == null) {
+      statement.bindNull(index);
+    } else {
+      statement.bindString(index, value);
+    }
+  }
+
+  /**
+   * @return the selection arguments for a single {@code ?} placeholder
+   */
+  protected static String[] toArgs(long value) {
+    return new String[] { Long.toString(value) };
+  }
+
 }
@@ -33,10 +33,16 @@
  *******************************************************************************/
 package libretasks.app.model.db;
 
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
 import android.content.Context;
 import android.content.SharedPreferences;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteOpenHelper;
+import android.os.Build;
 import android.preference.PreferenceManager;
 import android.util.Log;
 import libretasks.app.controller.util.IOUtil;
@@ -44,6 +50,10 @@ import libretasks.app.controller.util.IOUtil;
 /**
  * This class extends SQLiteOpenHelper to handle creating/open/close database, creating/deleting
  * tables and migrations.
+ * <p>
+ * The database helpers share one process wide connection through {@link #acquire(Context)} and
+ * {@link #release()}. It is opened with write-ahead logging where available, so UI reads don't
+ * wait for engine writes, and only closed once nobody has used it for {@link #IDLE_TIMEOUT}.
  */
 public class DbHelper extends SQLiteOpenHelper  {
   public static class AppName {
@@ -59,8 +69,17 @@ public class DbHelper extends SQLiteOpenHelper  {
   private static final String TAG = DbHelper.class.getName();
 
   // This version number needs to increase whenever a data schema change is made
-  private static final int DATABASE_VERSION = 23;
+  private static final int DATABASE_VERSION = 25;
+
 
+  /** Time (in milliseconds) the shared database stays open after its last user released it. */
+  private static final long IDLE_TIMEOUT = 30 * 1000;
+
+  private static DbHelper sharedHelper;
+  private static SQLiteDatabase sharedDatabase;
+  private static int references;
+  private static ScheduledFuture<?> pendingClose;
+  private static ScheduledExecutorService closer;
 
   private static final String DATABASE_NAME = "omnidroid";
   private static final String DATABASE_NAME_BACKUP = "omnidroid_backup";
@@ -75,6 +94,63 @@ public class DbHelper extends SQLiteOpenHelper  {
     this.context = context;
   }
 
+  /**
+   * Get the shared database, opening it if needed. Every call must be paired with a call to
+   * {@link #release()} once the caller is done with the database, the database itself must not be
+   * closed.
+   * 
+   * @param context
+   *          context for the application database resource
+   * @return the process wide writable database
+   */
+  public static synchronized SQLiteDatabase acquire(Context context) {
+    if (pendingClose != null) {
+      pendingClose.cancel(false);
+      pendingClose = null;
+    }
+    if (sharedDatabase == null || !sharedDatabase.isOpen()) {
+      sharedHelper = new DbHelper(context.getApplicationContext());
+      sharedDatabase = sharedHelper.getWritableDatabase();
+      if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+        sharedDatabase.enableWriteAheadLogging();
+      }
+    }
+    references++;
+    return sharedDatabase;
+  }
+
+  /**
+   * Give back a database obtained from {@link #acquire(Context)}. The database is closed once it
+   * has not been acquired again for {@link #IDLE_TIMEOUT}.
+   */
+  public static synchronized void release() {
+    if (references == 0) {
+      Log.w(TAG, "Database released more often than acquired");
+      return;
+    }
+    if (--references > 0) {
+      return;
+    }
+    if (closer == null) {
+      closer = Executors.newSingleThreadScheduledExecutor();
+    }
+    pendingClose = closer.schedule(new Runnable() {
+      public void run() {
+        closeIfIdle();
+      }
+    }, IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+  }
+
+  private static synchronized void closeIfIdle() {
+    if (references == 0 && sharedHelper != null) {
+      DbAdapter.closeStatements(sharedDatabase);
+      sharedHelper.close();
+      sharedHelper = null;
+      sharedDatabase = null;
+    }
+    pendingClose = null;
+  }
+
   @Override
   public void onCreate(SQLiteDatabase db) {
     // If the first install, upgrade starting from DB version 1
@@ -134,6 +134,10 @@ public class DbMigration {
     case 22:
       addBluetooth(db);
       addPowerOffAction(db);
+    case 23:
+      addFailedActionRetrySchedule(db);
+    case 24:
+      addIndexes(db);
 
       /*
        * Insert new versions before this line and do not forget to update {@code
@@ -903,6 +907,27 @@ public class DbMigration {
    db.execSQL(FailedActionsDbAdapter.DATABASE_CREATE);    
   }
 
+  private static void addFailedActionRetrySchedule(SQLiteDatabase db) {
+    db.execSQL(FailedActionsDbAdapter.ADD_ATTEMPTS_COLUMN);
+    db.execSQL(FailedActionsDbAdapter.ADD_NEXT_ATTEMPT_COLUMN);
+    db.execSQL(FailedActionsDbAdapter.CREATE_NEXT_ATTEMPT_INDEX);
+  }
+
+  /**
+   * Index the columns the engine filters on for every event and the log timestamps used for
+   * retention. {@code FailedActions} is already covered by the retry schedule index, and
+   * {@code LogEvent} is no longer written now that events go to the {@code EventJournal}.
+   */
+  private static void addIndexes(SQLiteDatabase db) {
+    db.execSQL(RuleDbAdapter.CREATE_EVENT_INDEX);
+    db.execSQL(RuleFilterDbAdapter.CREATE_RULE_INDEX);
+    db.execSQL(RuleActionDbAdapter.CREATE_RULE_INDEX);
+    db.execSQL(RuleActionParameterDbAdapter.CREATE_RULE_ACTION_INDEX);
+    db.execSQL(FailedActionParameterDbAdapter.CREATE_FAILED_ACTION_INDEX);
+    db.execSQL(LogActionDbAdapter.CREATE_TIMESTAMP_INDEX);
+    db.execSQL(LogGeneralDbAdapter.CREATE_TIMESTAMP_INDEX);
+  }
+
   private static void addMissedCallEvent(SQLiteDatabase db) {
     
     RegisteredAppDbAdapter registeredAppDbAdapter = new RegisteredAppDbAdapter(db); 
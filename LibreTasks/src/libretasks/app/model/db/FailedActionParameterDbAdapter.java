@@ -37,6 +37,7 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 
 /**
  * Database helper class for the FailedActionParameters table. Defines basic CRUD methods.
@@ -62,7 +63,7 @@ public class FailedActionParameterDbAdapter extends DbAdapter {
       KEY_ACTIONPARAMETERNAME, KEY_FAILEDACTIONPARAMETERDATA };
 
   /* Table name */
-  private static final String DATABASE_TABLE = "FailedActionParameters";
+  static final String DATABASE_TABLE = "FailedActionParameters";
 
   /* Create and drop statement. */
   protected static final String DATABASE_CREATE = "create table " + DATABASE_TABLE + " ("
@@ -72,6 +73,15 @@ public class FailedActionParameterDbAdapter extends DbAdapter {
       + KEY_FAILEDACTIONPARAMETERDATA + " text not null);";
   protected static final String DATABASE_DROP = "DROP TABLE IF EXISTS " + DATABASE_TABLE;
 
+  /* Parameters of a failed action, index added in database version 25 */
+  protected static final String CREATE_FAILED_ACTION_INDEX = "CREATE INDEX IF NOT EXISTS "
+      + DATABASE_TABLE + "_" + KEY_FAILEDACTIONID
+      + " ON " + DATABASE_TABLE + " (" + KEY_FAILEDACTIONID + ")";
+
+  private static final String INSERT = "INSERT INTO " + DATABASE_TABLE + " ("
+      + KEY_FAILEDACTIONID + ", " + KEY_ACTIONPARAMETERNAME + ", " + KEY_FAILEDACTIONPARAMETERDATA
+      + ") VALUES (?, ?, ?)";
+
   /**
    * Constructor.
    * 
@@ -100,11 +110,13 @@ public class FailedActionParameterDbAdapter extends DbAdapter {
     if (failedActionID == null || actionParameterName == null || failedActionParameterData == null){
       throw new IllegalArgumentException("insert parameter null.");
     }
-    ContentValues initialValues = new ContentValues();
-    initialValues.put(KEY_FAILEDACTIONID, failedActionID);
-    initialValues.put(KEY_ACTIONPARAMETERNAME, actionParameterName);
-    initialValues.put(KEY_FAILEDACTIONPARAMETERDATA, failedActionParameterData);
-    return database.insert(DATABASE_TABLE, null, initialValues);
+    SQLiteStatement statement = getStatement(INSERT);
+    synchronized (statement) {
+      statement.bindLong(1, failedActionID);
+      statement.bindString(2, actionParameterName);
+      statement.bindString(3, failedActionParameterData);
+      return statement.executeInsert();
+    }
   }
 
   /**
@@ -120,8 +132,7 @@ public class FailedActionParameterDbAdapter extends DbAdapter {
     if (failedActionID == null) {
       throw new IllegalArgumentException("null");
     }
-    // Set the whereArgs to null here.
-    return database.delete(DATABASE_TABLE, KEY_FAILEDACTIONID + "=" + failedActionID, null) > 0;
+    return database.delete(DATABASE_TABLE, KEY_FAILEDACTIONID + " = ?", toArgs(failedActionID)) > 0;
   }
 
   /**
@@ -39,6 +39,7 @@ import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteQueryBuilder;
+import android.database.sqlite.SQLiteStatement;
 
 /**
  * Database helper class for the FailedActions table. Defines basic CRUD methods. 
@@ -58,13 +59,15 @@ public class FailedActionsDbAdapter extends DbAdapter {
   public static final String KEY_FAILURE_TYPE = "failure_type";
   public static final String KEY_MESSAGE = "messages";
   public static final String KEY_TIMESTAMP = "timestamp";
+  public static final String KEY_ATTEMPTS = "attempts";
+  public static final String KEY_NEXT_ATTEMPT = "next_attempt";
   
   /* An array of all column names */
   public static final String[] KEYS = { KEY_FAILEDACTIONID, KEY_RULEID, KEY_ACTIONID, 
-      KEY_FAILURE_TYPE, KEY_MESSAGE, KEY_TIMESTAMP};
+      KEY_FAILURE_TYPE, KEY_MESSAGE, KEY_TIMESTAMP, KEY_ATTEMPTS, KEY_NEXT_ATTEMPT};
 
   /* Table name */
-  private static final String DATABASE_TABLE = "FailedActions";
+  static final String DATABASE_TABLE = "FailedActions";
 
   /* Create and drop statement. */
   protected static final String DATABASE_CREATE = "create table " + DATABASE_TABLE + " ("
@@ -75,8 +78,50 @@ public class FailedActionsDbAdapter extends DbAdapter {
       + KEY_MESSAGE + " text, "
       + KEY_TIMESTAMP + " integer not null);";
   protected static final String DATABASE_DROP = "DROP TABLE IF EXISTS " + DATABASE_TABLE;
+
+  /* Retry schedule, added in database version 24 */
+  protected static final String ADD_ATTEMPTS_COLUMN = "ALTER TABLE " + DATABASE_TABLE
+      + " ADD " + KEY_ATTEMPTS + " integer not null DEFAULT 0";
+  protected static final String ADD_NEXT_ATTEMPT_COLUMN = "ALTER TABLE " + DATABASE_TABLE
+      + " ADD " + KEY_NEXT_ATTEMPT + " integer not null DEFAULT 0";
+  protected static final String CREATE_NEXT_ATTEMPT_INDEX = "CREATE INDEX IF NOT EXISTS "
+      + DATABASE_TABLE + "_" + KEY_NEXT_ATTEMPT + " ON " + DATABASE_TABLE + " ("
+      + KEY_FAILURE_TYPE + ", " + KEY_NEXT_ATTEMPT + ")";
   
 
+  private static final String INSERT = "INSERT INTO " + DATABASE_TABLE + " (" + KEY_RULEID + ", "
+      + KEY_ACTIONID + ", " + KEY_FAILURE_TYPE + ", " + KEY_MESSAGE + ", " + KEY_TIMESTAMP + ", "
+      + KEY_ATTEMPTS + ", " + KEY_NEXT_ATTEMPT + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+  /* Records of a failure type, see fetchEarliest(String, Integer) */
+  static final String FAILURE_TYPE_SELECTION = KEY_FAILURE_TYPE + " = ?";
+
+  /* Records of a failure type with their details, see fetchAllWithDetails(int, Long) */
+  private static final String DETAILS_SELECT = "SELECT " + column("fa", KEY_FAILEDACTIONID) + ", "
+      + column("fa", KEY_ATTEMPTS)
+      + ", " + column("ra", RegisteredActionDbAdapter.KEY_ACTIONNAME)
+      + ", " + column("app", RegisteredAppDbAdapter.KEY_APPNAME)
+      + ", " + column("r", RuleDbAdapter.KEY_RULENAME)
+      + ", " + column("r", RuleDbAdapter.KEY_NOTIFICATION)
+      + ", " + column("p", FailedActionParameterDbAdapter.KEY_ACTIONPARAMETERNAME)
+      + ", " + column("p", FailedActionParameterDbAdapter.KEY_FAILEDACTIONPARAMETERDATA)
+      + " FROM " + DATABASE_TABLE + " fa"
+      + " JOIN " + RegisteredActionDbAdapter.DATABASE_TABLE + " ra ON ra."
+      + RegisteredActionDbAdapter.KEY_ACTIONID + " = fa." + KEY_ACTIONID
+      + " JOIN " + RegisteredAppDbAdapter.DATABASE_TABLE + " app ON app."
+      + RegisteredAppDbAdapter.KEY_APPID + " = ra." + RegisteredActionDbAdapter.KEY_APPID
+      + " JOIN " + RuleDbAdapter.DATABASE_TABLE + " r ON r." + RuleDbAdapter.KEY_RULEID
+      + " = fa." + KEY_RULEID
+      + " LEFT JOIN " + FailedActionParameterDbAdapter.DATABASE_TABLE + " p ON p."
+      + FailedActionParameterDbAdapter.KEY_FAILEDACTIONID + " = fa." + KEY_FAILEDACTIONID
+      + " WHERE fa." + KEY_FAILURE_TYPE + " = ?";
+  private static final String DETAILS_ORDER = " ORDER BY fa." + KEY_FAILEDACTIONID;
+  static final String DETAILS_QUERY = DETAILS_SELECT + DETAILS_ORDER;
+
+  /* Like DETAILS_QUERY, only the records whose retry is due, takes the failure type and the time */
+  static final String DUE_DETAILS_QUERY = DETAILS_SELECT + " AND fa." + KEY_NEXT_ATTEMPT + " <= ?"
+      + DETAILS_ORDER;
+
   /**
    * Constructor.
    * 
@@ -98,21 +143,28 @@ public class FailedActionsDbAdapter extends DbAdapter {
    *          notification message used if action never recovers.
    * @param failure
    *          integer identifying cause of failure
+   * @param nextAttempt
+   *          time (in milliseconds) of the first retry
    * @return FailedActionID or -1 if creation failed.
    * @throws IllegalArgumentException
    *           if there is null within parameters
    */
-  public long insert(Long ruleID, Long actionID, Integer failureType, String message) {
+  public long insert(Long ruleID, Long actionID, Integer failureType, String message,
+      long nextAttempt) {
     if (ruleID == null || actionID == null || failureType == null) {
       throw new IllegalArgumentException("insert parameter null.");
     }
-    ContentValues initialValues = new ContentValues();
-    initialValues.put(KEY_RULEID, ruleID);
-    initialValues.put(KEY_ACTIONID, actionID);
-    initialValues.put(KEY_FAILURE_TYPE, failureType);
-    initialValues.put(KEY_MESSAGE, message);
-    initialValues.put(KEY_TIMESTAMP, (new Date()).getTime());
-    return database.insert(DATABASE_TABLE, null, initialValues);
+    SQLiteStatement statement = getStatement(INSERT);
+    synchronized (statement) {
+      statement.bindLong(1, ruleID);
+      statement.bindLong(2, actionID);
+      statement.bindLong(3, failureType);
+      bindString(statement, 4, message);
+      statement.bindLong(5, (new Date()).getTime());
+      statement.bindLong(6, 1);
+      statement.bindLong(7, nextAttempt);
+      return statement.executeInsert();
+    }
   }
 
   /**
@@ -128,8 +180,7 @@ public class FailedActionsDbAdapter extends DbAdapter {
     if (failedActionID == null) {
       throw new IllegalArgumentException("primary key null.");
     }
-    // Set the whereArgs to null here.
-    return database.delete(DATABASE_TABLE, KEY_FAILEDACTIONID + "=" + failedActionID, null) > 0;
+    return database.delete(DATABASE_TABLE, KEY_FAILEDACTIONID + " = ?", toArgs(failedActionID)) > 0;
   }
 
   /**
@@ -155,9 +206,9 @@ public class FailedActionsDbAdapter extends DbAdapter {
     if (failedActionID == null) {
       throw new IllegalArgumentException("primary key null.");
     }
-    // Set selectionArgs, groupBy, having, orderBy and limit to be null.
-    Cursor mCursor = database.query(true, DATABASE_TABLE, KEYS, KEY_FAILEDACTIONID + "="
-        + failedActionID, null, null, null, null, null);
+    // Set groupBy, having, orderBy and limit to be null.
+    Cursor mCursor = database.query(true, DATABASE_TABLE, KEYS, KEY_FAILEDACTIONID + " = ?",
+        toArgs(failedActionID), null, null, null, null);
     if (mCursor != null) {
       mCursor.moveToFirst();
     }
@@ -202,6 +253,81 @@ public class FailedActionsDbAdapter extends DbAdapter {
     return qb.query(database, KEYS, null, null, null, null, null);
   }
 
+  /**
+   * Return a Cursor with everything needed to rebuild the FailedAction records of a failure type,
+   * read in one query: the action and application name, the name and notification setting of the
+   * rule, and the parameters. There is one row per parameter (or one row with null parameter
+   * columns for an action without parameters), and the rows of a record are adjacent.
+   * 
+   * @param failureType
+   *          is type of failure
+   * @param dueBefore
+   *          only fetch records whose retry is due at this time (in milliseconds), or null to fetch
+   *          all records of the failure type
+   * @return a Cursor with the columns {@link #KEY_FAILEDACTIONID}, {@link #KEY_ATTEMPTS},
+   *         {@link RegisteredActionDbAdapter#KEY_ACTIONNAME},
+   *         {@link RegisteredAppDbAdapter#KEY_APPNAME}, {@link RuleDbAdapter#KEY_RULENAME},
+   *         {@link RuleDbAdapter#KEY_NOTIFICATION},
+   *         {@link FailedActionParameterDbAdapter#KEY_ACTIONPARAMETERNAME} and
+   *         {@link FailedActionParameterDbAdapter#KEY_FAILEDACTIONPARAMETERDATA}
+   */
+  public Cursor fetchAllWithDetails(int failureType, Long dueBefore) {
+    if (dueBefore != null) {
+      return database.rawQuery(DUE_DETAILS_QUERY,
+          new String[] { Integer.toString(failureType), Long.toString(dueBefore) });
+    }
+    return database.rawQuery(DETAILS_QUERY, toArgs(failureType));
+  }
+
+  /**
+   * @return a result column of a joined table, named like the column itself
+   */
+  private static String column(String table, String column) {
+    return table + "." + column + " AS " + column;
+  }
+
+  /**
+   * Return the smallest value of a column.
+   * 
+   * @param column
+   *          the column, {@link #KEY_NEXT_ATTEMPT} or {@link #KEY_TIMESTAMP}
+   * @param failureType
+   *          is type of failure, or null for any
+   * @return the smallest value, or {@link Long#MAX_VALUE} if there are no records
+   */
+  public long fetchEarliest(String column, Integer failureType) {
+    Cursor cursor = database.query(DATABASE_TABLE, new String[] { "MIN(" + column + ")" },
+        (failureType != null) ? FAILURE_TYPE_SELECTION : null,
+        (failureType != null) ? toArgs(failureType) : null, null, null, null);
+    long earliest = Long.MAX_VALUE;
+    if (cursor.moveToFirst() && !cursor.isNull(0)) {
+      earliest = cursor.getLong(0);
+    }
+    cursor.close();
+    return earliest;
+  }
+
+  /**
+   * Set when a FailedAction is retried next.
+   * 
+   * @param failedActionID
+   *          is id of the record to be updated.
+   * @param attempts
+   *          the number of attempts made so far, or null if not updating it
+   * @param nextAttempt
+   *          time (in milliseconds) of the next retry
+   * @return true if success, or false otherwise.
+   */
+  public boolean reschedule(long failedActionID, Integer attempts, long nextAttempt) {
+    ContentValues args = new ContentValues();
+    if (attempts != null) {
+      args.put(KEY_ATTEMPTS, attempts);
+    }
+    args.put(KEY_NEXT_ATTEMPT, nextAttempt);
+    return database.update(DATABASE_TABLE, args, KEY_FAILEDACTIONID + " = ?",
+        toArgs(failedActionID)) > 0;
+  }
+
   /**
    * Update a FailedAction record with specific parameters.
    * 
@@ -250,10 +376,13 @@ public class FailedActionsDbAdapter extends DbAdapter {
   }
   
   private static final int HOUR = 3600000;
+
+  /** Age (in milliseconds) after which failed actions are given up */
+  public static final long MAX_AGE = HOUR;
   
   public Cursor fetchOldActions() {
     long timeAnHourAgo = (new Date()).getTime() - HOUR;
-    return database.query(DATABASE_TABLE, KEYS, KEY_TIMESTAMP + "<" + timeAnHourAgo, 
-        null, null, null, null);
+    return database.query(DATABASE_TABLE, KEYS, KEY_TIMESTAMP + " < ?", toArgs(timeAnHourAgo),
+        null, null, null);
   }
 }
@@ -35,9 +35,9 @@ package libretasks.app.model.db;
 
 import libretasks.app.model.Log;
 import libretasks.app.model.ActionLog;
-import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 
 /**
  * Database Adapter class for the LogAction table. Defines basic CRUD methods.
@@ -59,7 +59,7 @@ public class LogActionDbAdapter extends LogDbAdapter {
       KEY_ACTIONAPPNAME, KEY_ACTIONEVENTNAME, KEY_ACTIONPARAMETERS, KEY_DESCRIPTION };
 
   /* Table name */
-  private static final String DATABASE_TABLE = "LogAction";
+  static final String DATABASE_TABLE = "LogAction";
 
   /* Create and drop statement. */
   protected static final String DATABASE_CREATE = "create table " + DATABASE_TABLE + " (" + KEY_ID
@@ -69,6 +69,15 @@ public class LogActionDbAdapter extends LogDbAdapter {
       + KEY_DESCRIPTION + " text not null);";
   protected static final String DATABASE_DROP = "DROP TABLE IF EXISTS " + DATABASE_TABLE;
 
+  /* Time range lookups and retention, index added in database version 25 */
+  protected static final String CREATE_TIMESTAMP_INDEX = "CREATE INDEX IF NOT EXISTS "
+      + DATABASE_TABLE + "_" + KEY_TIMESTAMP + " ON " + DATABASE_TABLE + " (" + KEY_TIMESTAMP + ")";
+
+  private static final String INSERT = "INSERT INTO " + DATABASE_TABLE + " (" + KEY_TIMESTAMP
+      + ", " + KEY_LOGEVENTID + ", " + KEY_RULENAME + ", " + KEY_ACTIONAPPNAME + ", "
+      + KEY_ACTIONEVENTNAME + ", " + KEY_ACTIONPARAMETERS + ", " + KEY_DESCRIPTION
+      + ") VALUES (?, ?, ?, ?, ?, ?, ?)";
+
   public LogActionDbAdapter(SQLiteDatabase database) {
     super(database);
   }
@@ -98,15 +107,17 @@ public class LogActionDbAdapter extends LogDbAdapter {
         || actionParameters == null || description == null) {
       throw new IllegalArgumentException("insert parameter null.");
     }
-    ContentValues initialValues = new ContentValues();
-    initialValues.put(KEY_TIMESTAMP, timeStamp);
-    initialValues.put(KEY_LOGEVENTID, logEventID);
-    initialValues.put(KEY_RULENAME, ruleName);
-    initialValues.put(KEY_ACTIONAPPNAME, actionAppName);
-    initialValues.put(KEY_ACTIONEVENTNAME, actionEventName);
-    initialValues.put(KEY_ACTIONPARAMETERS, actionParameters);
-    initialValues.put(KEY_DESCRIPTION, description);
-    return database.insert(DATABASE_TABLE, null, initialValues);
+    SQLiteStatement statement = getStatement(INSERT);
+    synchronized (statement) {
+      statement.bindLong(1, timeStamp);
+      statement.bindLong(2, logEventID);
+      statement.bindString(3, ruleName);
+      statement.bindString(4, actionAppName);
+      statement.bindString(5, actionEventName);
+      statement.bindString(6, actionParameters);
+      statement.bindString(7, description);
+      return statement.executeInsert();
+    }
   }
 
   /**
@@ -117,8 +128,7 @@ public class LogActionDbAdapter extends LogDbAdapter {
    * @return true if success, or false otherwise.
    */
   public boolean delete(long id) {
-    // Set the whereArgs to null here.
-    return database.delete(DATABASE_TABLE, KEY_ID + "=" + id, null) > 0;
+    return database.delete(DATABASE_TABLE, KEY_ID + " = ?", toArgs(id)) > 0;
   }
 
   /**
@@ -139,8 +149,8 @@ public class LogActionDbAdapter extends LogDbAdapter {
    * @return the matching cursor.
    */
   public Cursor fetch(long id) {
-    // Set selectionArgs, groupBy, having, orderBy and limit to be null.
-    Cursor mCursor = database.query(true, DATABASE_TABLE, KEYS, KEY_ID + "=" + id, null, null,
+    // Set groupBy, having, orderBy and limit to be null.
+    Cursor mCursor = database.query(true, DATABASE_TABLE, KEYS, KEY_ID + " = ?", toArgs(id), null,
         null, null, null);
     if (mCursor != null) {
       mCursor.moveToFirst();
@@ -176,16 +186,40 @@ public class LogActionDbAdapter extends LogDbAdapter {
 
   @Override
   public Cursor fetchAllBefore(long timestamp) {
-    // Set selections, selectionArgs, groupBy, having, orderBy to null to fetch all rows.
-    String selection = KEY_TIMESTAMP + " < " + timestamp;
-    return database.query(DATABASE_TABLE, KEYS, selection, null, null, null, null);
+    // Set groupBy, having, orderBy to null.
+    return database.query(DATABASE_TABLE, KEYS, BEFORE_SELECTION, toArgs(timestamp), null,
+        null, null);
   }
 
   @Override
   public int deleteAllBefore(long timestamp) {
-    // Set where to before timestamp and whereArgs to null here.
-    String where = KEY_TIMESTAMP + " < " + timestamp;
-    return database.delete(DATABASE_TABLE, where, null);
+    return database.delete(DATABASE_TABLE, BEFORE_SELECTION, toArgs(timestamp));
+  }
+
+  @Override
+  public Cursor fetchPage(long timestamp, long id, int limit) {
+    // Set groupBy and having to null.
+    return database.query(DATABASE_TABLE, KEYS, PAGE_SELECTION, toPageArgs(timestamp, id), null,
+        null, PAGE_ORDER, Integer.toString(limit));
+  }
+
+  /**
+   * @return the highest LogEvent ID referred to by a LogAction record, 0 if there is none
+   */
+  public long fetchMaxLogEventId() {
+    SQLiteStatement statement = database.compileStatement("SELECT IFNULL(MAX(" + KEY_LOGEVENTID
+        + "), 0) FROM " + DATABASE_TABLE);
+    try {
+      return statement.simpleQueryForLong();
+    } finally {
+      statement.close();
+    }
+  }
+
+  @Override
+  public int deleteAllButNewest(int count) {
+    return database.delete(DATABASE_TABLE, KEY_ID + " <= (SELECT MAX(" + KEY_ID + ") FROM "
+        + DATABASE_TABLE + ") - ?", toArgs(count));
   }
 
 }
@@ -73,5 +73,46 @@ public abstract class LogDbAdapter extends DbAdapter {
    */
   abstract public int deleteAllBefore(long timestamp);
 
+  /**
+   * Delete all but the newest {@code count} logs, for when the log is kept as a ring of entries
+   * instead of by age. Row IDs are never reused, so after inserting row {@code id} the ring is kept
+   * in shape by deleting row {@code id - count}; this is only needed after the size was changed.
+   * 
+   * @return number of logs deleted
+   */
+  abstract public int deleteAllButNewest(int count);
+
   abstract public boolean delete(long id);
+
+  /**
+   * Get a page of logs, newest first, that follows the log with the given key. The page is read
+   * through the TimeStamp index, so it costs the same no matter how many logs there are.
+   * 
+   * @param timestamp
+   *          timestamp of the last log of the previous page, or {@link Long#MAX_VALUE}
+   * @param id
+   *          ID of the last log of the previous page, or {@link Long#MAX_VALUE}
+   * @param limit
+   *          the maximum number of logs to return
+   * @return a Cursor that contains the logs older than the given key, newest first
+   */
+  abstract public Cursor fetchPage(long timestamp, long id, int limit);
+
+  /** Selection of {@link #fetchPage(long, long, int)}, takes the timestamp twice and the ID */
+  protected static final String PAGE_SELECTION = KEY_TIMESTAMP + " <= ? AND NOT (" + KEY_TIMESTAMP
+      + " = ? AND " + KEY_ID + " >= ?)";
+
+  /** Selection of {@link #fetchAllBefore(long)} and {@link #deleteAllBefore(long)} */
+  protected static final String BEFORE_SELECTION = KEY_TIMESTAMP + " < ?";
+
+  /** Order of {@link #fetchPage(long, long, int)} */
+  protected static final String PAGE_ORDER = KEY_TIMESTAMP + " DESC, " + KEY_ID + " DESC";
+
+  /**
+   * @return the selection arguments of {@link #fetchPage(long, long, int)}
+   */
+  protected static String[] toPageArgs(long timestamp, long id) {
+    String timestampArg = Long.toString(timestamp);
+    return new String[] { timestampArg, timestampArg, Long.toString(id) };
+  }
 }
@@ -35,9 +35,9 @@ package libretasks.app.model.db;
 
 import libretasks.app.model.EventLog;
 import libretasks.app.model.Log;
-import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 
 /**
  * Database Adapter class for the LogEvent table. Defines basic CRUD methods.
@@ -68,6 +68,10 @@ public class LogEventDbAdapter extends LogDbAdapter {
       + " text not null," + KEY_DESCRIPTION + " text not null);";
   protected static final String DATABASE_DROP = "DROP TABLE IF EXISTS " + DATABASE_TABLE;
 
+  private static final String INSERT = "INSERT INTO " + DATABASE_TABLE + " (" + KEY_TIMESTAMP
+      + ", " + KEY_APPNAME + ", " + KEY_EVENTNAME + ", " + KEY_EVENTPARAMETERS + ", "
+      + KEY_DESCRIPTION + ") VALUES (?, ?, ?, ?, ?)";
+
   public LogEventDbAdapter(SQLiteDatabase database) {
     super(database);
   }
@@ -92,13 +96,15 @@ public class LogEventDbAdapter extends LogDbAdapter {
     if (appName == null || eventName == null || eventParameters == null || description == null) {
       throw new IllegalArgumentException("insert parameter null.");
     }
-    ContentValues initialValues = new ContentValues();
-    initialValues.put(KEY_TIMESTAMP, timeStamp);
-    initialValues.put(KEY_APPNAME, appName);
-    initialValues.put(KEY_EVENTNAME, eventName);
-    initialValues.put(KEY_EVENTPARAMETERS, eventParameters);
-    initialValues.put(KEY_DESCRIPTION, description);
-    return database.insert(DATABASE_TABLE, null, initialValues);
+    SQLiteStatement statement = getStatement(INSERT);
+    synchronized (statement) {
+      statement.bindLong(1, timeStamp);
+      statement.bindString(2, appName);
+      statement.bindString(3, eventName);
+      statement.bindString(4, eventParameters);
+      statement.bindString(5, description);
+      return statement.executeInsert();
+    }
   }
 
   /**
@@ -109,8 +115,7 @@ public class LogEventDbAdapter extends LogDbAdapter {
    * @return true if success, or false otherwise.
    */
   public boolean delete(long id) {
-    // Set the whereArgs to null here.
-    return database.delete(DATABASE_TABLE, KEY_ID + "=" + id, null) > 0;
+    return database.delete(DATABASE_TABLE, KEY_ID + " = ?", toArgs(id)) > 0;
   }
 
   /**
@@ -131,8 +136,8 @@ public class LogEventDbAdapter extends LogDbAdapter {
    * @return the matching cursor.
    */
   public Cursor fetch(long id) {
-    // Set selectionArgs, groupBy, having, orderBy and limit to be null.
-    Cursor mCursor = database.query(true, DATABASE_TABLE, KEYS, KEY_ID + "=" + id, null, null,
+    // Set groupBy, having, orderBy and limit to be null.
+    Cursor mCursor = database.query(true, DATABASE_TABLE, KEYS, KEY_ID + " = ?", toArgs(id), null,
         null, null, null);
     if (mCursor != null) {
       mCursor.moveToFirst();
@@ -170,23 +175,47 @@ public class LogEventDbAdapter extends LogDbAdapter {
    * @return a Cursor that contains all LogEvent records since timestamp
    */
   public Cursor fetchAllSince(long timestamp) {
-    // Set selections, selectionArgs, groupBy, having, orderBy to null to fetch all rows.
-    String selection = KEY_TIMESTAMP + " > " + timestamp;
-    return database.query(DATABASE_TABLE, KEYS, selection, null, null, null, null);
+    // Set groupBy, having, orderBy to null.
+    return database.query(DATABASE_TABLE, KEYS, KEY_TIMESTAMP + " > ?", toArgs(timestamp), null,
+        null, null);
   }
 
   @Override
   public Cursor fetchAllBefore(long timestamp) {
-    // Set selections, selectionArgs, groupBy, having, orderBy to null to fetch all rows.
-    String selection = KEY_TIMESTAMP + " < " + timestamp;
-    return database.query(DATABASE_TABLE, KEYS, selection, null, null, null, null);
+    // Set groupBy, having, orderBy to null.
+    return database.query(DATABASE_TABLE, KEYS, BEFORE_SELECTION, toArgs(timestamp), null,
+        null, null);
   }
 
   @Override
   public int deleteAllBefore(long timestamp) {
-    // Set where to before timestamp and whereArgs to null here.
-    String where = KEY_TIMESTAMP + " < " + timestamp;
-    return database.delete(DATABASE_TABLE, where, null);
+    return database.delete(DATABASE_TABLE, BEFORE_SELECTION, toArgs(timestamp));
+  }
+
+  @Override
+  public Cursor fetchPage(long timestamp, long id, int limit) {
+    // Set groupBy and having to null.
+    return database.query(DATABASE_TABLE, KEYS, PAGE_SELECTION, toPageArgs(timestamp, id), null,
+        null, PAGE_ORDER, Integer.toString(limit));
+  }
+
+  /**
+   * @return the highest LogEvent ID, 0 if there are no LogEvent records
+   */
+  public long fetchMaxId() {
+    SQLiteStatement statement = database.compileStatement("SELECT IFNULL(MAX(" + KEY_ID
+        + "), 0) FROM " + DATABASE_TABLE);
+    try {
+      return statement.simpleQueryForLong();
+    } finally {
+      statement.close();
+    }
+  }
+
+  @Override
+  public int deleteAllButNewest(int count) {
+    return database.delete(DATABASE_TABLE, KEY_ID + " <= (SELECT MAX(" + KEY_ID + ") FROM "
+        + DATABASE_TABLE + ") - ?", toArgs(count));
   }
 
 }
@@ -36,9 +36,9 @@ package libretasks.app.model.db;
 import libretasks.app.controller.util.Logger;
 import libretasks.app.model.GeneralLog;
 import libretasks.app.model.Log;
-import android.content.ContentValues;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
 
 /**
  * Database Adapter class for the {@code LogGeneral} table. Defines basic CRUD methods.
@@ -59,17 +59,24 @@ public class LogGeneralDbAdapter extends LogDbAdapter {
   public static final String[] KEYS = { KEY_ID, KEY_TIMESTAMP, KEY_DESCRIPTION, KEY_LEVEL };
 
   /* Table name */
-  private static final String DATABASE_TABLE = "LogGeneral";
+  static final String DATABASE_TABLE = "LogGeneral";
 
   /* Create and drop statement. */
   protected static final String DATABASE_CREATE = "create table " + DATABASE_TABLE + " (" + KEY_ID
       + " integer primary key autoincrement, " + KEY_TIMESTAMP + " integer, " + KEY_DESCRIPTION
       + " text not null);";
   protected static final String DATABASE_DROP = "DROP TABLE IF EXISTS " + DATABASE_TABLE;
+
+  /* Time range lookups and retention, index added in database version 25 */
+  protected static final String CREATE_TIMESTAMP_INDEX = "CREATE INDEX IF NOT EXISTS "
+      + DATABASE_TABLE + "_" + KEY_TIMESTAMP + " ON " + DATABASE_TABLE + " (" + KEY_TIMESTAMP + ")";
   
   protected static final String ADD_LEVEL_COLUMN = "ALTER TABLE " + DATABASE_TABLE  
                + " ADD " + KEY_LEVEL + " integer not null DEFAULT " + LOG_LEVEL_DEFAULT;
 
+  private static final String INSERT = "INSERT INTO " + DATABASE_TABLE + " (" + KEY_TIMESTAMP
+      + ", " + KEY_DESCRIPTION + ", " + KEY_LEVEL + ") VALUES (?, ?, ?)";
+
   public LogGeneralDbAdapter(SQLiteDatabase database) {
     super(database);
   }
@@ -85,11 +92,13 @@ public class LogGeneralDbAdapter extends LogDbAdapter {
     if (description == null) {
       throw new IllegalArgumentException("insert parameter null.");
     }
-    ContentValues initialValues = new ContentValues();
-    initialValues.put(KEY_TIMESTAMP, timeStamp);
-    initialValues.put(KEY_DESCRIPTION, description);
-    initialValues.put(KEY_LEVEL, level);
-    return database.insert(DATABASE_TABLE, null, initialValues);
+    SQLiteStatement statement = getStatement(INSERT);
+    synchronized (statement) {
+      statement.bindLong(1, timeStamp);
+      statement.bindString(2, description);
+      statement.bindLong(3, level);
+      return statement.executeInsert();
+    }
   }
 
   /**
@@ -100,8 +109,7 @@ public class LogGeneralDbAdapter extends LogDbAdapter {
    * @return true if success, or false otherwise.
    */
   public boolean delete(long id) {
-    // Set the whereArgs to null here.
-    return database.delete(DATABASE_TABLE, KEY_ID + "=" + id, null) > 0;
+    return database.delete(DATABASE_TABLE, KEY_ID + " = ?", toArgs(id)) > 0;
   }
 
   /**
@@ -122,8 +130,8 @@ public class LogGeneralDbAdapter extends LogDbAdapter {
    * @return the matching cursor.
    */
   public Cursor fetch(long id) {
-    // Set selectionArgs, groupBy, having, orderBy and limit to be null.
-    Cursor mCursor = database.query(true, DATABASE_TABLE, KEYS, KEY_ID + "=" + id, null, null,
+    // Set groupBy, having, orderBy and limit to be null.
+    Cursor mCursor = database.query(true, DATABASE_TABLE, KEYS, KEY_ID + " = ?", toArgs(id), null,
         null, null, null);
     if (mCursor != null) {
       mCursor.moveToFirst();
@@ -158,15 +166,26 @@ public class LogGeneralDbAdapter extends LogDbAdapter {
 
   @Override
   public Cursor fetchAllBefore(long timestamp) {
-    // Set selections, selectionArgs, groupBy, having, orderBy to null to fetch all rows.
-    String selection = KEY_TIMESTAMP + " < " + timestamp;
-    return database.query(DATABASE_TABLE, KEYS, selection, null, null, null, null);
+    // Set groupBy, having, orderBy to null.
+    return database.query(DATABASE_TABLE, KEYS, BEFORE_SELECTION, toArgs(timestamp), null,
+        null, null);
   }
 
   @Override
   public int deleteAllBefore(long timestamp) {
-    // Set where to before timestamp and whereArgs to null here.
-    String where = KEY_TIMESTAMP + " < " + timestamp;
-    return database.delete(DATABASE_TABLE, where, null);
+    return database.delete(DATABASE_TABLE, BEFORE_SELECTION, toArgs(timestamp));
+  }
+
+  @Override
+  public Cursor fetchPage(long timestamp, long id, int limit) {
+    // Set groupBy and having to null.
+    return database.query(DATABASE_TABLE, KEYS, PAGE_SELECTION, toPageArgs(timestamp, id), null,
+        null, PAGE_ORDER, Integer.toString(limit));
+  }
+
+  @Override
+  public int deleteAllButNewest(int count) {
+    return database.delete(DATABASE_TABLE, KEY_ID + " <= (SELECT MAX(" + KEY_ID + ") FROM "
+        + DATABASE_TABLE + ") - ?", toArgs(count));
   }
 }
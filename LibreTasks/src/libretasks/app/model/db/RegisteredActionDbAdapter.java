@@ -57,7 +57,7 @@ public class RegisteredActionDbAdapter extends DbAdapter {
   public static final String[] KEYS = { KEY_ACTIONID, KEY_ACTIONNAME, KEY_APPID };
 
   /* Table name */
-  private static final String DATABASE_TABLE = "RegisteredActions";
+  static final String DATABASE_TABLE = "RegisteredActions";
 
   /* Create and drop statement. */
   protected static final String DATABASE_CREATE = "create table " + DATABASE_TABLE + " ("
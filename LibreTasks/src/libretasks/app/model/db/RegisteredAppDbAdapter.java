@@ -66,7 +66,7 @@ public class RegisteredAppDbAdapter extends DbAdapter {
       KEY_LOGIN, KEY_USERNAME, KEY_PASSWORD };
 
   /* Table name */
-  private static final String DATABASE_TABLE = "RegisteredApps";
+  static final String DATABASE_TABLE = "RegisteredApps";
 
   /* Create and drop statement. */
   protected static final String DATABASE_CREATE = "create table " + DATABASE_TABLE + " ("
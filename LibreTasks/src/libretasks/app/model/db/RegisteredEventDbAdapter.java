@@ -62,7 +62,7 @@ public class RegisteredEventDbAdapter extends DbAdapter {
   public static final String[] KEYS = { KEY_EVENTID, KEY_EVENTNAME, KEY_APPID };
 
   /* Table name */
-  private static final String DATABASE_TABLE = "RegisteredEvents";
+  static final String DATABASE_TABLE = "RegisteredEvents";
 
   /* Create and drop statement. */
   protected static final String DATABASE_CREATE = "create table " + DATABASE_TABLE + " ("
@@ -58,7 +58,7 @@ public class RuleActionDbAdapter extends DbAdapter {
   public static final String[] KEYS = { KEY_RULEACTIONID, KEY_RULEID, KEY_ACTIONID };
 
   /* Table name */
-  private static final String DATABASE_TABLE = "RuleActions";
+  static final String DATABASE_TABLE = "RuleActions";
 
   /* Create and drop statement. */
   protected static final String DATABASE_CREATE = "create table " + DATABASE_TABLE + " ("
@@ -67,6 +67,13 @@ public class RuleActionDbAdapter extends DbAdapter {
       + KEY_ACTIONID + " integer not null);";
   protected static final String DATABASE_DROP = "DROP TABLE IF EXISTS " + DATABASE_TABLE;
 
+  /* Actions of a rule, index added in database version 25 */
+  protected static final String CREATE_RULE_INDEX = "CREATE INDEX IF NOT EXISTS "
+      + DATABASE_TABLE + "_" + KEY_RULEID + " ON " + DATABASE_TABLE + " (" + KEY_RULEID + ")";
+
+  /* Actions of a rule, see fetchAll(Long, Long) */
+  static final String RULE_SELECTION = KEY_RULEID + " = ?";
+
   /**
    * Constructor.
    * 
@@ -169,15 +176,18 @@ public class RuleActionDbAdapter extends DbAdapter {
     SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
     qb.setTables(DATABASE_TABLE);
     qb.appendWhere("1=1");
+    String selection = null;
+    String[] selectionArgs = null;
     if (ruleID != null) {
-      qb.appendWhere(" AND " + KEY_RULEID + " = " + ruleID);
+      selection = RULE_SELECTION;
+      selectionArgs = toArgs(ruleID);
     }
     if (actionID != null) {
       qb.appendWhere(" AND " + KEY_ACTIONID + " = " + actionID);
     }
 
-    // Not using additional selections, selectionArgs, groupBy, having, orderBy, set them to null.
-    return qb.query(database, KEYS, null, null, null, null, null);
+    // Not using groupBy, having, orderBy, set them to null.
+    return qb.query(database, KEYS, selection, selectionArgs, null, null, null);
   }
 
   /**
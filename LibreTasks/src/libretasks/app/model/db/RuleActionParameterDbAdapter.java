@@ -63,7 +63,7 @@ public class RuleActionParameterDbAdapter extends DbAdapter {
       KEY_ACTIONPARAMETERID, KEY_RULEACTIONPARAMETERDATA };
 
   /* Table name */
-  private static final String DATABASE_TABLE = "RuleActionParameters";
+  static final String DATABASE_TABLE = "RuleActionParameters";
 
   /* Create and drop statement. */
   protected static final String DATABASE_CREATE = "create table " + DATABASE_TABLE + " ("
@@ -73,6 +73,14 @@ public class RuleActionParameterDbAdapter extends DbAdapter {
       + KEY_RULEACTIONPARAMETERDATA + " text not null);";
   protected static final String DATABASE_DROP = "DROP TABLE IF EXISTS " + DATABASE_TABLE;
 
+  /* Parameters of a rule action, index added in database version 25 */
+  protected static final String CREATE_RULE_ACTION_INDEX = "CREATE INDEX IF NOT EXISTS "
+      + DATABASE_TABLE + "_" + KEY_RULEACTIONID
+      + " ON " + DATABASE_TABLE + " (" + KEY_RULEACTIONID + ")";
+
+  /* Parameters of a rule action, see fetchAll(Long, Long, String) */
+  static final String RULE_ACTION_SELECTION = KEY_RULEACTIONID + " = ?";
+
   /**
    * Constructor.
    * 
@@ -183,8 +191,11 @@ public class RuleActionParameterDbAdapter extends DbAdapter {
     SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
     qb.setTables(DATABASE_TABLE);
     qb.appendWhere("1=1");
+    String selection = null;
+    String[] selectionArgs = null;
     if (ruleActionID != null) {
-      qb.appendWhere(" AND " + KEY_RULEACTIONID + " = " + ruleActionID);
+      selection = RULE_ACTION_SELECTION;
+      selectionArgs = toArgs(ruleActionID);
     }
     if (actionParameterID != null) {
       qb.appendWhere(" AND " + KEY_ACTIONPARAMETERID + " = " + actionParameterID);
@@ -193,8 +204,8 @@ public class RuleActionParameterDbAdapter extends DbAdapter {
       qb.appendWhere(" AND " + KEY_RULEACTIONPARAMETERDATA + " = ");
       qb.appendWhereEscapeString(ruleActionParameterData);
     }
-    // Not using additional selections, selectionArgs, groupBy, having, orderBy, set them to null.
-    return qb.query(database, KEYS, null, null, null, null, null);
+    // Not using groupBy, having, orderBy, set them to null.
+    return qb.query(database, KEYS, selection, selectionArgs, null, null, null);
   }
 
   /**
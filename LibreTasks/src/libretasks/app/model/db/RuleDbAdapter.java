@@ -74,7 +74,7 @@ public class RuleDbAdapter extends DbAdapter {
       KEY_ENABLED, KEY_CREATED, KEY_UPDATED, KEY_NOTIFICATION };
 
   /* Table name */
-  private static final String DATABASE_TABLE = "Rules";
+  static final String DATABASE_TABLE = "Rules";
 
   /* Create and drop statement. */
   protected static final String DATABASE_CREATE = "create table " + DATABASE_TABLE + " ("
@@ -86,6 +86,22 @@ public class RuleDbAdapter extends DbAdapter {
       + KEY_CREATED + " datetime, " 
       + KEY_UPDATED + " datetime);";
   protected static final String DATABASE_DROP = "DROP TABLE IF EXISTS " + DATABASE_TABLE;
+
+  /* Enabled rules of an event, index added in database version 25 */
+  protected static final String CREATE_EVENT_INDEX = "CREATE INDEX IF NOT EXISTS "
+      + DATABASE_TABLE + "_" + KEY_EVENTID
+      + " ON " + DATABASE_TABLE + " (" + KEY_EVENTID + ", " + KEY_ENABLED + ")";
+
+  /* Events with an enabled rule of an enabled application, see fetchEnabledEvents() */
+  static final String ENABLED_EVENTS_QUERY = "SELECT DISTINCT app."
+      + RegisteredAppDbAdapter.KEY_APPNAME + " AS " + RegisteredAppDbAdapter.KEY_APPNAME + ", e."
+      + RegisteredEventDbAdapter.KEY_EVENTNAME + " AS " + RegisteredEventDbAdapter.KEY_EVENTNAME
+      + " FROM " + DATABASE_TABLE + " r"
+      + " JOIN " + RegisteredEventDbAdapter.DATABASE_TABLE + " e ON e."
+      + RegisteredEventDbAdapter.KEY_EVENTID + " = r." + KEY_EVENTID
+      + " JOIN " + RegisteredAppDbAdapter.DATABASE_TABLE + " app ON app."
+      + RegisteredAppDbAdapter.KEY_APPID + " = e." + RegisteredEventDbAdapter.KEY_APPID
+      + " WHERE r." + KEY_ENABLED + " = 1 AND app." + RegisteredAppDbAdapter.KEY_ENABLED + " = 1";
   
   protected static final String ADD_NOTIFICATION_COLUMN = "ALTER TABLE " + DATABASE_TABLE  
                + " ADD " + KEY_NOTIFICATION + " integer not null DEFAULT 1";
@@ -236,6 +252,17 @@ public class RuleDbAdapter extends DbAdapter {
     return qb.query(database, KEYS, null, null, null, null, orderBy);
   }
 
+  /**
+   * Return a Cursor with the application and event name of every event that has an enabled rule and
+   * belongs to an enabled application, each pair appearing once.
+   * 
+   * @return a Cursor with the columns {@link RegisteredAppDbAdapter#KEY_APPNAME} and
+   *         {@link RegisteredEventDbAdapter#KEY_EVENTNAME}
+   */
+  public Cursor fetchEnabledEvents() {
+    return database.rawQuery(ENABLED_EVENTS_QUERY, null);
+  }
+
   /**
    * Update a rule record with specific parameters.
    * 
@@ -75,7 +75,7 @@ public class RuleFilterDbAdapter extends DbAdapter {
       KEY_EXTERNALATTRIBUTEID, KEY_DATAFILTERID, KEY_PARENTRULEFILTERID, KEY_RULEFILTERDATA };
 
   /* Table name */
-  private static final String DATABASE_TABLE = "RuleFilters";
+  static final String DATABASE_TABLE = "RuleFilters";
 
   /* Create and drop statement. */
   protected static final String DATABASE_CREATE = "create table " + DATABASE_TABLE + " ("
@@ -88,6 +88,13 @@ public class RuleFilterDbAdapter extends DbAdapter {
       + KEY_RULEFILTERDATA + " text not null);";
   protected static final String DATABASE_DROP = "DROP TABLE IF EXISTS " + DATABASE_TABLE;
 
+  /* Filters of a rule, index added in database version 25 */
+  protected static final String CREATE_RULE_INDEX = "CREATE INDEX IF NOT EXISTS "
+      + DATABASE_TABLE + "_" + KEY_RULEID + " ON " + DATABASE_TABLE + " (" + KEY_RULEID + ")";
+
+  /* Filters of a rule, see fetchAll(Long, Long, Long, Long, Long, String) */
+  static final String RULE_SELECTION = KEY_RULEID + " = ?";
+
   /**
    * Constructor.
    * 
@@ -214,8 +221,11 @@ public class RuleFilterDbAdapter extends DbAdapter {
     SQLiteQueryBuilder qb = new SQLiteQueryBuilder();
     qb.setTables(DATABASE_TABLE);
     qb.appendWhere("1=1");
+    String selection = null;
+    String[] selectionArgs = null;
     if (ruleID != null) {
-      qb.appendWhere(" AND " + KEY_RULEID + " = " + ruleID);
+      selection = RULE_SELECTION;
+      selectionArgs = toArgs(ruleID);
     }
     if (eventAttributeID != null) {
       qb.appendWhere(" AND " + KEY_EVENTATTRIBUTEID + " = " + eventAttributeID);
@@ -233,8 +243,8 @@ public class RuleFilterDbAdapter extends DbAdapter {
       qb.appendWhere(" AND " + KEY_RULEFILTERDATA + " = ");
       qb.appendWhereEscapeString(ruleFilterData);
     }
-    // Not using additional selections, selectionArgs, groupBy, having, orderBy, set them to null.
-    return qb.query(database, KEYS, null, null, null, null, null);
+    // Not using groupBy, having, orderBy, set them to null.
+    return qb.query(database, KEYS, selection, selectionArgs, null, null, null);
   }
 
   /**
@@ -33,6 +33,7 @@
  *******************************************************************************/
 package libretasks.app.view.simple;
 
+import java.util.ArrayList;
 import java.util.List;
 
 import android.app.Activity;
@@ -40,6 +41,7 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.graphics.Typeface;
+import android.os.AsyncTask;
 import android.os.Bundle;
 import android.view.Gravity;
 import android.view.Menu;
@@ -55,8 +57,11 @@ import android.widget.LinearLayout;
 import android.widget.ListView;
 import android.widget.TextView;
 import android.widget.Toast;
+import android.widget.AbsListView.OnScrollListener;
 import android.widget.AdapterView.OnItemClickListener;
 import libretasks.app.R;
+import libretasks.app.model.LogPager;
+import libretasks.app.model.UIDbHelper;
 import libretasks.app.view.simple.model.ModelLog;
 
 /**
@@ -85,6 +90,9 @@ public class ActivityLogTabs extends Activity {
   private static final int MENU_CLEAR_LOGS = 1;
 
   
+  // Number of logs loaded at a time
+  private static final int PAGE_SIZE = 50;
+
   // General global variables
   protected ListView listView;
   
@@ -161,6 +169,7 @@ public class ActivityLogTabs extends Activity {
     listView = (ListView) findViewById(R.id.activity_logs_listview);
     listView.setChoiceMode(ListView.CHOICE_MODE_SINGLE);
     listView.setAdapter(logAdapter);
+    listView.setOnScrollListener(logAdapter);
 
     // Restore UI control values if possible.
     state = getSharedPreferences(KEY_STATE, Context.MODE_WORLD_READABLE
@@ -198,9 +207,21 @@ public class ActivityLogTabs extends Activity {
       startActivity(new Intent(this, ActivitySettings.class));
       return true;
     case MENU_CLEAR_LOGS:
+      // The event logs are removed in the background, refresh the list again once they are gone
+      Runnable onCleared = new Runnable() {
+        public void run() {
+          runOnUiThread(new Runnable() {
+            public void run() {
+              if (!isFinishing()) {
+                updateUI();
+              }
+            }
+          });
+        }
+      };
       switch (logTypeSelected) {
       case KEY_EVENT_LOGS:
-        UIDbHelperStore.instance().db().deleteEventLogs();
+        UIDbHelperStore.instance().db().deleteEventLogs(onCleared);
         break;
       case KEY_ACTION_LOGS:
         UIDbHelperStore.instance().db().deleteActionLogs();
@@ -209,7 +230,7 @@ public class ActivityLogTabs extends Activity {
         UIDbHelperStore.instance().db().deleteGeneralLogs();
         break;
       case KEY_ALL_LOGS:
-        UIDbHelperStore.instance().db().deleteAllLogs();
+        UIDbHelperStore.instance().db().deleteAllLogs(onCleared);
         break;
       }
     }
@@ -218,33 +239,80 @@ public class ActivityLogTabs extends Activity {
   }
 
   /**
-   * Handles rendering of log items for our ListView.
+   * Handles rendering of log items for our ListView. Logs are loaded a page at a time in the
+   * background, the next page once the user scrolls close to the end of the list.
    * 
    */
-  private class LogAdapter extends BaseAdapter {
+  private class LogAdapter extends BaseAdapter implements OnScrollListener {
     private Context context;
-    private List<ModelLog> logs;
+    private List<ModelLog> logs = new ArrayList<ModelLog>();
+    private LogPager pager;
+    private boolean loading;
 
     public LogAdapter(Context context) {
       this.context = context;
 
-      // Get a list of logs from the database.
+      // Page through the selected logs
+      UIDbHelper db = UIDbHelperStore.instance().db();
       if (logTypeSelected == KEY_ALL_LOGS) {
-        logs = UIDbHelperStore.instance().db().getAllLogs();
+        pager = new LogPager(db, ModelLog.TYPE_GENERAL, ModelLog.TYPE_EVENT,
+            ModelLog.TYPE_ACTION);
       } else if (logTypeSelected == KEY_EVENT_LOGS) {
-        logs = UIDbHelperStore.instance().db().getEventLogs();
+        pager = new LogPager(db, ModelLog.TYPE_EVENT);
       } else if (logTypeSelected == KEY_ACTION_LOGS) {
-        logs = UIDbHelperStore.instance().db().getActionLogs();
-      } else if (logTypeSelected == KEY_GENERAL_LOGS) {
-        logs = UIDbHelperStore.instance().db().getGeneralLogs();
+        pager = new LogPager(db, ModelLog.TYPE_ACTION);
+      } else {
+        pager = new LogPager(db, ModelLog.TYPE_GENERAL);
+      }
+      loadNextPage();
+    }
+
+    /**
+     * Load the next page of logs in the background, unless one is loading already.
+     */
+    private void loadNextPage() {
+      if (loading || !pager.hasMore()) {
+        return;
       }
-     
-      // Tell our user when empty
-      if (logs.isEmpty()) {
-        Toast.makeText(context, getString(R.string.no_logs), Toast.LENGTH_LONG).show();
+      loading = true;
+      new AsyncTask<Void, Void, List<ModelLog>>() {
+        @Override
+        protected List<ModelLog> doInBackground(Void... params) {
+          try {
+            return pager.nextPage(PAGE_SIZE);
+          } catch (IllegalStateException e) {
+            // The database was closed while leaving the activity
+            return null;
+          }
+        }
+
+        @Override
+        protected void onPostExecute(List<ModelLog> page) {
+          loading = false;
+          if (page == null || listView.getAdapter() != LogAdapter.this) {
+            return;
+          }
+          logs.addAll(page);
+          notifyDataSetChanged();
+
+          // Tell our user when empty
+          if (logs.isEmpty()) {
+            Toast.makeText(context, getString(R.string.no_logs), Toast.LENGTH_LONG).show();
+          }
+        }
+      }.execute();
+    }
+
+    public void onScroll(AbsListView view, int firstVisibleItem, int visibleItemCount,
+        int totalItemCount) {
+      if (firstVisibleItem + visibleItemCount >= totalItemCount - PAGE_SIZE / 2) {
+        loadNextPage();
       }
     }
 
+    public void onScrollStateChanged(AbsListView view, int scrollState) {
+    }
+
     public int getCount() {
       return logs.size();
     }
@@ -49,7 +49,9 @@ import android.preference.Preference;
 import android.preference.PreferenceActivity;
 import android.preference.Preference.OnPreferenceClickListener;
 import libretasks.app.R;
+import libretasks.app.controller.EngineConfig;
 import libretasks.app.controller.OmnidroidManager;
+import libretasks.app.controller.external.attributes.EventMonitoringService;
 import libretasks.app.model.db.RuleDbAdapter;
 
 /**
@@ -197,6 +199,8 @@ public class ActivitySettings extends PreferenceActivity implements
     sharedPreferences.edit().clear().commit();
     sharedPreferences.edit().putBoolean(PREF_KEY_ACCEPTED_DISCAIMER, true);
     sharedPreferences.edit().commit();
+    EngineConfig.reload(getApplicationContext());
+    EventMonitoringService.refresh(getApplicationContext());
 
     /*
      * Restart this activity to get updates.
@@ -236,6 +240,11 @@ public class ActivitySettings extends PreferenceActivity implements
    * updated.
    */
   public void onSharedPreferenceChanged(SharedPreferences sharedPreferences, String key) {
+    if (EngineConfig.isConfigKey(this, key)) {
+      EngineConfig.reload(getApplicationContext());
+      EventMonitoringService.refresh(getApplicationContext());
+    }
+
     if (key.equals(getString(R.string.pref_key_notification))) {
       setNotification(sharedPreferences.getBoolean(key, true));          
     } else if (key.equals(getString(R.string.pref_key_gmail_signature))){
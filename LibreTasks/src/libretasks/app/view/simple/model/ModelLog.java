@@ -91,6 +91,10 @@ public class ModelLog extends ModelItem {
     return type;
   }
 
+  public long getTimestamp() {
+    return timestamp;
+  }
+
   /**
    * @return Human readable String representation of the the type of log stored.
    */
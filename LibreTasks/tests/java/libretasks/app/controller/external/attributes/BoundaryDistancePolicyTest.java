@@ -0,0 +1,127 @@
+/*  
+ * Copyright (c) 2016  LibreTasks - https://github.com/biotinker/LibreTasks  
+ *  
+ *  This file is free software: you may copy, redistribute and/or modify it  
+ *  under the terms of the GNU General Public License as published by the  
+ *  Free Software Foundation, either version 3 of the License, or (at your  
+ *  option) any later version.  
+ *  
+ *  This file is distributed in the hope that it will be useful, but  
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of  
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU  
+ *  General Public License for more details.  
+ *  
+ *  You should have received a copy of the GNU General Public License  
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package libretasks.app.controller.external.attributes;
+
+import java.util.Random;
+
+import junit.framework.TestCase;
+import libretasks.app.controller.external.attributes.LocationSamplingPolicy.Sampling;
+
+/**
+ * Replays simulated tracks through {@link BoundaryDistancePolicy}. The tracks are generated from a
+ * fixed seed, so every run checks the same fixes.
+ */
+public class BoundaryDistancePolicyTest extends TestCase {
+
+  /** Number of fixes in a simulated track. */
+  private static final int TRACK_LENGTH = 10000;
+
+  private final BoundaryDistancePolicy policy = new BoundaryDistancePolicy();
+
+  /**
+   * A device at up to {@link BoundaryDistancePolicy#MAX_SPEED} must not get from one side of a
+   * boundary to the other between two fixes, unless the policy is already sampling as often as it
+   * can.
+   */
+  public void testDeviceNeverCrossesBoundaryBetweenFixes() {
+    Random random = new Random(42);
+    // Signed position relative to a single boundary, in meters
+    double position = 20000;
+    for (int i = 0; i < TRACK_LENGTH; i++) {
+      double boundaryDistance = Math.abs(position);
+      Sampling sampling = policy.getSampling(boundaryDistance);
+
+      // Head for the boundary most of the time, at any speed up to the assumed maximum
+      double speed = BoundaryDistancePolicy.MAX_SPEED * random.nextDouble();
+      if (random.nextInt(4) != 0) {
+        speed = -Math.signum(position) * speed;
+      }
+      double next = position + speed * sampling.getInterval() / 1000;
+
+      if (Math.signum(next) != Math.signum(position)) {
+        assertEquals("crossed from " + position + " m to " + next + " m with " + sampling,
+            BoundaryDistancePolicy.MIN_INTERVAL, sampling.getInterval());
+      }
+      if (sampling.getMinDistance() > BoundaryDistancePolicy.MIN_DISTANCE) {
+        assertTrue("distance held back at " + boundaryDistance + " m with " + sampling,
+            sampling.getMinDistance() <= boundaryDistance / 2);
+      }
+      position = next;
+    }
+  }
+
+  /**
+   * The fastest approach allowed must always be caught before the boundary when there is time
+   * for more than one fix.
+   */
+  public void testFullSpeedApproachStopsShortOfBoundary() {
+    double boundaryDistance = 50000;
+    while (boundaryDistance > 0) {
+      Sampling sampling = policy.getSampling(boundaryDistance);
+      double travelled = BoundaryDistancePolicy.MAX_SPEED * sampling.getInterval() / 1000;
+      if (sampling.getInterval() > BoundaryDistancePolicy.MIN_INTERVAL) {
+        assertTrue("overshot at " + boundaryDistance + " m with " + sampling,
+            travelled <= boundaryDistance);
+      }
+      boundaryDistance -= travelled;
+    }
+  }
+
+  /**
+   * Intervals and distances are powers of two of their minimum, so nearby distances map to the
+   * same request and the request only changes when the device moves between buckets.
+   */
+  public void testRoundingIsStable() {
+    Sampling previous = null;
+    for (int distance = 0; distance <= 40000; distance++) {
+      Sampling sampling = policy.getSampling(distance);
+      assertEquals(sampling, policy.getSampling(distance));
+
+      long intervalSteps = sampling.getInterval() / BoundaryDistancePolicy.MIN_INTERVAL;
+      assertTrue("interval " + sampling.getInterval() + " at " + distance + " m",
+          sampling.getInterval() == BoundaryDistancePolicy.MAX_INTERVAL
+              || (sampling.getInterval() % BoundaryDistancePolicy.MIN_INTERVAL == 0
+                  && Long.bitCount(intervalSteps) == 1));
+      float distanceSteps = sampling.getMinDistance() / BoundaryDistancePolicy.MIN_DISTANCE;
+      assertTrue("distance " + sampling.getMinDistance() + " at " + distance + " m",
+          distanceSteps == (int) distanceSteps && Integer.bitCount((int) distanceSteps) == 1);
+
+      if (previous != null) {
+        // Moving away never samples more often
+        assertTrue(sampling.getInterval() >= previous.getInterval());
+        assertTrue(sampling.getMinDistance() >= previous.getMinDistance());
+      }
+      previous = sampling;
+    }
+
+    // Small movements within a bucket keep the request
+    assertEquals(policy.getSampling(1000), policy.getSampling(1001));
+    assertEquals(policy.getSampling(5000.5), policy.getSampling(5000));
+  }
+
+  /**
+   * Without any areas in the rules there is no boundary to approach, however the device moves.
+   */
+  public void testNoAreasKeepsLongestSampling() {
+    Sampling expected = new Sampling(BoundaryDistancePolicy.MAX_INTERVAL,
+        BoundaryDistancePolicy.MAX_DISTANCE);
+    for (int i = 0; i < TRACK_LENGTH; i++) {
+      assertEquals(expected, policy.getSampling(Double.POSITIVE_INFINITY));
+    }
+    assertEquals(expected, policy.getSampling(1000000));
+  }
+}
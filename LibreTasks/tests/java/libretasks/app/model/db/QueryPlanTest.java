@@ -0,0 +1,115 @@
+/*  
+ * Copyright (c) 2016  LibreTasks - https://github.com/biotinker/LibreTasks  
+ *  
+ *  This file is free software: you may copy, redistribute and/or modify it  
+ *  under the terms of the GNU General Public License as published by the  
+ *  Free Software Foundation, either version 3 of the License, or (at your  
+ *  option) any later version.  
+ *  
+ *  This file is distributed in the hope that it will be useful, but  
+ *  WITHOUT ANY WARRANTY; without even the implied warranty of  
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU  
+ *  General Public License for more details.  
+ *  
+ *  You should have received a copy of the GNU General Public License  
+ *  along with this program.  If not, see <http://www.gnu.org/licenses/>.  
+ */
+package libretasks.app.model.db;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.test.AndroidTestCase;
+
+/**
+ * Checks with {@code EXPLAIN QUERY PLAN} that the queries run for every event, every failed action
+ * retry and every page of the log view are answered from an index instead of a full table scan.
+ * The schema is built by {@link DbMigration} in an in-memory database, just like a new install.
+ */
+public class QueryPlanTest extends AndroidTestCase {
+  private static final String[] LOG_TABLES = { LogActionDbAdapter.DATABASE_TABLE,
+      LogGeneralDbAdapter.DATABASE_TABLE };
+
+  private SQLiteDatabase database;
+
+  @Override
+  protected void setUp() throws Exception {
+    super.setUp();
+    database = SQLiteDatabase.create(null);
+    DbMigration.migrateToLatest(getContext(), database, 1);
+  }
+
+  @Override
+  protected void tearDown() throws Exception {
+    database.close();
+    super.tearDown();
+  }
+
+  public void testEnabledEventsUseIndex() {
+    assertUsesIndex(RuleDbAdapter.ENABLED_EVENTS_QUERY);
+  }
+
+  public void testRuleFiltersOfRuleUseIndex() {
+    assertUsesIndex(select(RuleFilterDbAdapter.DATABASE_TABLE, RuleFilterDbAdapter.RULE_SELECTION),
+        "1");
+  }
+
+  public void testRuleActionsOfRuleUseIndex() {
+    assertUsesIndex(select(RuleActionDbAdapter.DATABASE_TABLE, RuleActionDbAdapter.RULE_SELECTION),
+        "1");
+  }
+
+  public void testRuleActionParametersOfRuleActionUseIndex() {
+    assertUsesIndex(select(RuleActionParameterDbAdapter.DATABASE_TABLE,
+        RuleActionParameterDbAdapter.RULE_ACTION_SELECTION), "1");
+  }
+
+  public void testFailedActionsOfFailureTypeUseIndex() {
+    assertUsesIndex("SELECT MIN(" + FailedActionsDbAdapter.KEY_NEXT_ATTEMPT + ") FROM "
+        + FailedActionsDbAdapter.DATABASE_TABLE + " WHERE "
+        + FailedActionsDbAdapter.FAILURE_TYPE_SELECTION, "1");
+  }
+
+  public void testFailedActionsWithDetailsUseIndex() {
+    assertUsesIndex(FailedActionsDbAdapter.DETAILS_QUERY, "1");
+    assertUsesIndex(FailedActionsDbAdapter.DUE_DETAILS_QUERY, "1", "1000");
+  }
+
+  public void testLogPageUsesIndex() {
+    for (String table : LOG_TABLES) {
+      assertUsesIndex(select(table, LogDbAdapter.PAGE_SELECTION) + " ORDER BY "
+          + LogDbAdapter.PAGE_ORDER + " LIMIT 50", "1000", "1000", "10");
+    }
+  }
+
+  public void testLogRetentionUsesIndex() {
+    for (String table : LOG_TABLES) {
+      assertUsesIndex("DELETE FROM " + table + " WHERE " + LogDbAdapter.BEFORE_SELECTION, "1000");
+    }
+  }
+
+  /**
+   * @return the query {@link android.database.sqlite.SQLiteDatabase#query} runs for a selection
+   */
+  private static String select(String table, String selection) {
+    return "SELECT * FROM " + table + " WHERE " + selection;
+  }
+
+  /**
+   * Fail if any table of a query is read by a scan that doesn't use an index.
+   */
+  private void assertUsesIndex(String sql, String... args) {
+    Cursor cursor = database.rawQuery("EXPLAIN QUERY PLAN " + sql, args);
+    try {
+      int detailColumn = cursor.getColumnIndexOrThrow("detail");
+      assertTrue("no query plan for " + sql, cursor.getCount() > 0);
+      while (cursor.moveToNext()) {
+        String detail = cursor.getString(detailColumn);
+        if (detail.startsWith("SCAN") && !detail.contains(" USING ")) {
+          fail(sql + " reads a whole table: " + detail);
+        }
+      }
+    } finally {
+      cursor.close();
+    }
+  }
+}